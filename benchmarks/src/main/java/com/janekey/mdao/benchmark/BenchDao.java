@@ -0,0 +1,56 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.dao.BaseDao;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expose the protected BaseDao methods to the benchmarks.
+ */
+public class BenchDao extends BaseDao {
+
+    public static final int ROWS = 10000;
+
+    /**
+     * Create tb_bench_user with ROWS rows, once per JVM.
+     */
+    public synchronized void createTable() {
+        if (selectCount("SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'tb_bench_user'") > 0) {
+            return;
+        }
+        executeUpdate("CREATE TABLE tb_bench_user (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(32), "
+                + "pwd VARCHAR(32), score BIGINT, create_time TIMESTAMP)");
+        for (int i = 0; i < ROWS; i++) {
+            insert(newUser(i));
+        }
+    }
+
+    public static BenchUser newUser(int i) {
+        BenchUser user = new BenchUser();
+        user.setName("user" + i);
+        user.setPwd("pwd" + i);
+        user.setScore((long) i);
+        user.setCreateTime(new Date());
+        return user;
+    }
+
+    public int insert(BenchUser user) {
+        return executeInsert(user);
+    }
+
+    public int update(BenchUser user) {
+        return updateObject(user);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<BenchUser> selectUsers(int fromId, int toId) {
+        return selectList("SELECT * FROM tb_bench_user WHERE id >= ? AND id < ?", BenchUser.class, fromId, toId);
+    }
+
+    public List<Map<String, Object>> queryUsers(int fromId, int toId) {
+        return executeQuery("SELECT id, name, score FROM tb_bench_user WHERE id >= ? AND id < ?", fromId, toId);
+    }
+
+}
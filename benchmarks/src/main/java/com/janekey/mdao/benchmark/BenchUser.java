@@ -0,0 +1,68 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+
+import java.util.Date;
+
+/**
+ * Model of the tb_bench_user table used by {@link DaoBenchmark}.
+ */
+@Table(name = "tb_bench_user")
+public class BenchUser {
+
+    @Column(column = "id")
+    private Integer id;
+
+    @Column(column = "name")
+    private String name;
+
+    @Column(column = "pwd")
+    private String pwd;
+
+    @Column(column = "score")
+    private Long score;
+
+    @Column(column = "create_time")
+    private Date createTime;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPwd() {
+        return pwd;
+    }
+
+    public void setPwd(String pwd) {
+        this.pwd = pwd;
+    }
+
+    public Long getScore() {
+        return score;
+    }
+
+    public void setScore(Long score) {
+        this.score = score;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+}
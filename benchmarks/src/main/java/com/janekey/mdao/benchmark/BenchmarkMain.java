@@ -0,0 +1,33 @@
+package com.janekey.mdao.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the DAO and pool benchmarks at 1, 8, 64 and 256 threads with the GC profiler,
+ * which adds the allocation rate (gc.alloc.rate.norm is bytes per operation) to the throughput.
+ *
+ * java -cp target/benchmarks.jar com.janekey.mdao.benchmark.BenchmarkMain [include regexp]
+ */
+public class BenchmarkMain {
+
+    private static final int[] THREADS = {1, 8, 64, 256};
+
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 ? args[0] : "(DaoBenchmark|PoolBenchmark)";
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .result("jmh-result-" + threads + "-threads.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+}
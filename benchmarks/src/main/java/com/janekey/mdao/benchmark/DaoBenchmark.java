@@ -0,0 +1,67 @@
+package com.janekey.mdao.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BaseDao operations against the in-memory H2 database of database.properties.
+ * Run it at several thread counts with {@link BenchmarkMain}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBenchmark {
+
+    private static final int PAGE = 20;
+
+    private final BenchDao dao = new BenchDao();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dao.createTable();
+    }
+
+    @Benchmark
+    public int executeInsert() {
+        return dao.insert(BenchDao.newUser(ThreadLocalRandom.current().nextInt(BenchDao.ROWS)));
+    }
+
+    @Benchmark
+    public List<BenchUser> selectList() {
+        int from = 1 + ThreadLocalRandom.current().nextInt(BenchDao.ROWS - PAGE);
+        return dao.selectUsers(from, from + PAGE);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> executeQuery() {
+        int from = 1 + ThreadLocalRandom.current().nextInt(BenchDao.ROWS - PAGE);
+        return dao.queryUsers(from, from + PAGE);
+    }
+
+    @Benchmark
+    public int updateObject() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BenchUser user = new BenchUser();
+        user.setId(1 + random.nextInt(BenchDao.ROWS));
+        user.setScore(random.nextLong());
+        return dao.update(user);
+    }
+
+}
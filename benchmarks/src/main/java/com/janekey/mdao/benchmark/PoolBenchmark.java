@@ -0,0 +1,42 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.connection.DBConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Check out and return a connection, with the synchronized pool ('db') and the concurrent pool
+ * ('concurrent') of database.properties. Both have maxconn 32, so higher thread counts wait.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoolBenchmark {
+
+    @Param({"db", "concurrent"})
+    public String pool;
+
+    private final DBConnectionManager manager = DBConnectionManager.getInstance();
+
+    @Benchmark
+    public Connection checkoutReturn() {
+        Connection con = manager.getConnection(pool, 30000);
+        manager.freeConnection(pool, con);
+        return con;
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.dao.BeanRowMapper;
+import com.janekey.mdao.dao.ColumnMetadata;
+import com.janekey.mdao.dao.EntityMetadata;
+import com.janekey.mdao.dao.RowMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map a result set of 5, 20 and 50 columns to model objects, with the row map path of
+ * the old selectList and with {@link BeanRowMapper}.
+ * The result set is scrollable and read again on every invocation, so only the mapping is measured.
+ *
+ * java -jar target/benchmarks.jar RowMapperBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    static final String[] COLUMN_TYPES = {"INT", "BIGINT", "VARCHAR(64)", "DOUBLE", "TIMESTAMP"};
+
+    @Param({"5", "20", "50"})
+    public int columns;
+
+    @Param({"1000"})
+    public int rows;
+
+    private Connection conn;
+    private ResultSet rs;
+    private Class<?> model;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        model = Class.forName(RowMapperBenchmark.class.getPackage().getName() + ".Wide" + columns);
+        conn = DriverManager.getConnection("jdbc:h2:mem:rowmapper" + columns + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        String table = "tb_wide" + columns;
+
+        StringBuilder create = new StringBuilder("CREATE TABLE ").append(table).append(" (");
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(table).append(" VALUES (");
+        for (int i = 0; i < columns; i++) {
+            create.append("c").append(i).append(" ").append(COLUMN_TYPES[i % 5]).append(",");
+            insert.append("?,");
+        }
+        create.deleteCharAt(create.length() - 1).append(")");
+        insert.deleteCharAt(insert.length() - 1).append(")");
+
+        Statement stmt = conn.createStatement();
+        stmt.execute(create.toString());
+        stmt.close();
+        PreparedStatement ps = conn.prepareStatement(insert.toString());
+        for (int row = 0; row < rows; row++) {
+            for (int i = 0; i < columns; i++) {
+                ps.setObject(i + 1, value(i % 5, row));
+            }
+            ps.addBatch();
+        }
+        ps.executeBatch();
+        ps.close();
+
+        rs = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)
+                .executeQuery("SELECT * FROM " + table);
+
+        // 列名与 @Column 不一致时两种方式都不绑定任何列, 测量没有意义
+        rs.next();
+        Object first = BeanRowMapper.forShape(model, rs.getMetaData()).mapRow(rs);
+        for (ColumnMetadata column : EntityMetadata.forClass(model).getColumns()) {
+            if (column.get(first) == null) {
+                throw new IllegalStateException("column " + column.getColumnName() + " of " + table + " is not mapped");
+            }
+        }
+    }
+
+    private static Object value(int type, int row) {
+        switch (type) {
+            case 0: return row;
+            case 1: return (long) row * 31;
+            case 2: return "value-" + row;
+            case 3: return row * 0.5d;
+            default: return new Timestamp(1366646400000L + row * 1000L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        rs.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public List<Object> rowMap() throws Exception {
+        rs.beforeFirst();
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        List<Object> rsList = new ArrayList<Object>();
+        while (rs.next()) {
+            Map<String, Object> rowMap = new HashMap<String, Object>();
+            for (int i = 0; i < columnCount; i++) {
+                rowMap.put(rsmd.getColumnLabel(i + 1), rs.getObject(i + 1));
+            }
+            Object instance = model.newInstance();
+            fillObject(instance, rowMap);
+            rsList.add(instance);
+        }
+        return rsList;
+    }
+
+    @Benchmark
+    public List<Object> rowMapper() throws Exception {
+        rs.beforeFirst();
+        RowMapper<?> mapper = BeanRowMapper.forShape(model, rs.getMetaData());
+        List<Object> rsList = new ArrayList<Object>();
+        while (rs.next()) {
+            rsList.add(mapper.mapRow(rs));
+        }
+        return rsList;
+    }
+
+    /**
+     * The reflective fillObject of BaseDao before the row mapper.
+     */
+    private static void fillObject(Object object, Map<String, Object> rowMap) throws Exception {
+        Class<?> cl = object.getClass();
+        for (Field field : cl.getDeclaredFields()) {
+            Column column = field.getAnnotation(Column.class);
+            if (column != null) {
+                Object obj = rowMap.get(column.column());
+                if (obj != null) {
+                    String fieldName = field.getName();
+                    String methodName = "set" + String.valueOf(fieldName.charAt(0)).toUpperCase() + fieldName.substring(1);
+                    Method method = cl.getDeclaredMethod(methodName, field.getType());
+                    method.invoke(object, obj);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+
+import java.util.Date;
+
+/**
+ * Benchmark model with 20 columns, column c<i> has the SQL type of RowMapperBenchmark.COLUMN_TYPES[i % 5].
+ */
+@Table(name = "tb_wide20")
+public class Wide20 {
+
+    @Column(column = "c0")
+    private Integer c0;
+
+    @Column(column = "c1")
+    private Long c1;
+
+    @Column(column = "c2")
+    private String c2;
+
+    @Column(column = "c3")
+    private Double c3;
+
+    @Column(column = "c4")
+    private Date c4;
+
+    @Column(column = "c5")
+    private Integer c5;
+
+    @Column(column = "c6")
+    private Long c6;
+
+    @Column(column = "c7")
+    private String c7;
+
+    @Column(column = "c8")
+    private Double c8;
+
+    @Column(column = "c9")
+    private Date c9;
+
+    @Column(column = "c10")
+    private Integer c10;
+
+    @Column(column = "c11")
+    private Long c11;
+
+    @Column(column = "c12")
+    private String c12;
+
+    @Column(column = "c13")
+    private Double c13;
+
+    @Column(column = "c14")
+    private Date c14;
+
+    @Column(column = "c15")
+    private Integer c15;
+
+    @Column(column = "c16")
+    private Long c16;
+
+    @Column(column = "c17")
+    private String c17;
+
+    @Column(column = "c18")
+    private Double c18;
+
+    @Column(column = "c19")
+    private Date c19;
+
+    public Integer getC0() {
+        return c0;
+    }
+
+    public void setC0(Integer c0) {
+        this.c0 = c0;
+    }
+
+    public Long getC1() {
+        return c1;
+    }
+
+    public void setC1(Long c1) {
+        this.c1 = c1;
+    }
+
+    public String getC2() {
+        return c2;
+    }
+
+    public void setC2(String c2) {
+        this.c2 = c2;
+    }
+
+    public Double getC3() {
+        return c3;
+    }
+
+    public void setC3(Double c3) {
+        this.c3 = c3;
+    }
+
+    public Date getC4() {
+        return c4;
+    }
+
+    public void setC4(Date c4) {
+        this.c4 = c4;
+    }
+
+    public Integer getC5() {
+        return c5;
+    }
+
+    public void setC5(Integer c5) {
+        this.c5 = c5;
+    }
+
+    public Long getC6() {
+        return c6;
+    }
+
+    public void setC6(Long c6) {
+        this.c6 = c6;
+    }
+
+    public String getC7() {
+        return c7;
+    }
+
+    public void setC7(String c7) {
+        this.c7 = c7;
+    }
+
+    public Double getC8() {
+        return c8;
+    }
+
+    public void setC8(Double c8) {
+        this.c8 = c8;
+    }
+
+    public Date getC9() {
+        return c9;
+    }
+
+    public void setC9(Date c9) {
+        this.c9 = c9;
+    }
+
+    public Integer getC10() {
+        return c10;
+    }
+
+    public void setC10(Integer c10) {
+        this.c10 = c10;
+    }
+
+    public Long getC11() {
+        return c11;
+    }
+
+    public void setC11(Long c11) {
+        this.c11 = c11;
+    }
+
+    public String getC12() {
+        return c12;
+    }
+
+    public void setC12(String c12) {
+        this.c12 = c12;
+    }
+
+    public Double getC13() {
+        return c13;
+    }
+
+    public void setC13(Double c13) {
+        this.c13 = c13;
+    }
+
+    public Date getC14() {
+        return c14;
+    }
+
+    public void setC14(Date c14) {
+        this.c14 = c14;
+    }
+
+    public Integer getC15() {
+        return c15;
+    }
+
+    public void setC15(Integer c15) {
+        this.c15 = c15;
+    }
+
+    public Long getC16() {
+        return c16;
+    }
+
+    public void setC16(Long c16) {
+        this.c16 = c16;
+    }
+
+    public String getC17() {
+        return c17;
+    }
+
+    public void setC17(String c17) {
+        this.c17 = c17;
+    }
+
+    public Double getC18() {
+        return c18;
+    }
+
+    public void setC18(Double c18) {
+        this.c18 = c18;
+    }
+
+    public Date getC19() {
+        return c19;
+    }
+
+    public void setC19(Date c19) {
+        this.c19 = c19;
+    }
+}
@@ -0,0 +1,68 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+
+import java.util.Date;
+
+/**
+ * Benchmark model with 5 columns, column c<i> has the SQL type of RowMapperBenchmark.COLUMN_TYPES[i % 5].
+ */
+@Table(name = "tb_wide5")
+public class Wide5 {
+
+    @Column(column = "c0")
+    private Integer c0;
+
+    @Column(column = "c1")
+    private Long c1;
+
+    @Column(column = "c2")
+    private String c2;
+
+    @Column(column = "c3")
+    private Double c3;
+
+    @Column(column = "c4")
+    private Date c4;
+
+    public Integer getC0() {
+        return c0;
+    }
+
+    public void setC0(Integer c0) {
+        this.c0 = c0;
+    }
+
+    public Long getC1() {
+        return c1;
+    }
+
+    public void setC1(Long c1) {
+        this.c1 = c1;
+    }
+
+    public String getC2() {
+        return c2;
+    }
+
+    public void setC2(String c2) {
+        this.c2 = c2;
+    }
+
+    public Double getC3() {
+        return c3;
+    }
+
+    public void setC3(Double c3) {
+        this.c3 = c3;
+    }
+
+    public Date getC4() {
+        return c4;
+    }
+
+    public void setC4(Date c4) {
+        this.c4 = c4;
+    }
+}
@@ -0,0 +1,563 @@
+package com.janekey.mdao.benchmark;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+
+import java.util.Date;
+
+/**
+ * Benchmark model with 50 columns, column c<i> has the SQL type of RowMapperBenchmark.COLUMN_TYPES[i % 5].
+ */
+@Table(name = "tb_wide50")
+public class Wide50 {
+
+    @Column(column = "c0")
+    private Integer c0;
+
+    @Column(column = "c1")
+    private Long c1;
+
+    @Column(column = "c2")
+    private String c2;
+
+    @Column(column = "c3")
+    private Double c3;
+
+    @Column(column = "c4")
+    private Date c4;
+
+    @Column(column = "c5")
+    private Integer c5;
+
+    @Column(column = "c6")
+    private Long c6;
+
+    @Column(column = "c7")
+    private String c7;
+
+    @Column(column = "c8")
+    private Double c8;
+
+    @Column(column = "c9")
+    private Date c9;
+
+    @Column(column = "c10")
+    private Integer c10;
+
+    @Column(column = "c11")
+    private Long c11;
+
+    @Column(column = "c12")
+    private String c12;
+
+    @Column(column = "c13")
+    private Double c13;
+
+    @Column(column = "c14")
+    private Date c14;
+
+    @Column(column = "c15")
+    private Integer c15;
+
+    @Column(column = "c16")
+    private Long c16;
+
+    @Column(column = "c17")
+    private String c17;
+
+    @Column(column = "c18")
+    private Double c18;
+
+    @Column(column = "c19")
+    private Date c19;
+
+    @Column(column = "c20")
+    private Integer c20;
+
+    @Column(column = "c21")
+    private Long c21;
+
+    @Column(column = "c22")
+    private String c22;
+
+    @Column(column = "c23")
+    private Double c23;
+
+    @Column(column = "c24")
+    private Date c24;
+
+    @Column(column = "c25")
+    private Integer c25;
+
+    @Column(column = "c26")
+    private Long c26;
+
+    @Column(column = "c27")
+    private String c27;
+
+    @Column(column = "c28")
+    private Double c28;
+
+    @Column(column = "c29")
+    private Date c29;
+
+    @Column(column = "c30")
+    private Integer c30;
+
+    @Column(column = "c31")
+    private Long c31;
+
+    @Column(column = "c32")
+    private String c32;
+
+    @Column(column = "c33")
+    private Double c33;
+
+    @Column(column = "c34")
+    private Date c34;
+
+    @Column(column = "c35")
+    private Integer c35;
+
+    @Column(column = "c36")
+    private Long c36;
+
+    @Column(column = "c37")
+    private String c37;
+
+    @Column(column = "c38")
+    private Double c38;
+
+    @Column(column = "c39")
+    private Date c39;
+
+    @Column(column = "c40")
+    private Integer c40;
+
+    @Column(column = "c41")
+    private Long c41;
+
+    @Column(column = "c42")
+    private String c42;
+
+    @Column(column = "c43")
+    private Double c43;
+
+    @Column(column = "c44")
+    private Date c44;
+
+    @Column(column = "c45")
+    private Integer c45;
+
+    @Column(column = "c46")
+    private Long c46;
+
+    @Column(column = "c47")
+    private String c47;
+
+    @Column(column = "c48")
+    private Double c48;
+
+    @Column(column = "c49")
+    private Date c49;
+
+    public Integer getC0() {
+        return c0;
+    }
+
+    public void setC0(Integer c0) {
+        this.c0 = c0;
+    }
+
+    public Long getC1() {
+        return c1;
+    }
+
+    public void setC1(Long c1) {
+        this.c1 = c1;
+    }
+
+    public String getC2() {
+        return c2;
+    }
+
+    public void setC2(String c2) {
+        this.c2 = c2;
+    }
+
+    public Double getC3() {
+        return c3;
+    }
+
+    public void setC3(Double c3) {
+        this.c3 = c3;
+    }
+
+    public Date getC4() {
+        return c4;
+    }
+
+    public void setC4(Date c4) {
+        this.c4 = c4;
+    }
+
+    public Integer getC5() {
+        return c5;
+    }
+
+    public void setC5(Integer c5) {
+        this.c5 = c5;
+    }
+
+    public Long getC6() {
+        return c6;
+    }
+
+    public void setC6(Long c6) {
+        this.c6 = c6;
+    }
+
+    public String getC7() {
+        return c7;
+    }
+
+    public void setC7(String c7) {
+        this.c7 = c7;
+    }
+
+    public Double getC8() {
+        return c8;
+    }
+
+    public void setC8(Double c8) {
+        this.c8 = c8;
+    }
+
+    public Date getC9() {
+        return c9;
+    }
+
+    public void setC9(Date c9) {
+        this.c9 = c9;
+    }
+
+    public Integer getC10() {
+        return c10;
+    }
+
+    public void setC10(Integer c10) {
+        this.c10 = c10;
+    }
+
+    public Long getC11() {
+        return c11;
+    }
+
+    public void setC11(Long c11) {
+        this.c11 = c11;
+    }
+
+    public String getC12() {
+        return c12;
+    }
+
+    public void setC12(String c12) {
+        this.c12 = c12;
+    }
+
+    public Double getC13() {
+        return c13;
+    }
+
+    public void setC13(Double c13) {
+        this.c13 = c13;
+    }
+
+    public Date getC14() {
+        return c14;
+    }
+
+    public void setC14(Date c14) {
+        this.c14 = c14;
+    }
+
+    public Integer getC15() {
+        return c15;
+    }
+
+    public void setC15(Integer c15) {
+        this.c15 = c15;
+    }
+
+    public Long getC16() {
+        return c16;
+    }
+
+    public void setC16(Long c16) {
+        this.c16 = c16;
+    }
+
+    public String getC17() {
+        return c17;
+    }
+
+    public void setC17(String c17) {
+        this.c17 = c17;
+    }
+
+    public Double getC18() {
+        return c18;
+    }
+
+    public void setC18(Double c18) {
+        this.c18 = c18;
+    }
+
+    public Date getC19() {
+        return c19;
+    }
+
+    public void setC19(Date c19) {
+        this.c19 = c19;
+    }
+
+    public Integer getC20() {
+        return c20;
+    }
+
+    public void setC20(Integer c20) {
+        this.c20 = c20;
+    }
+
+    public Long getC21() {
+        return c21;
+    }
+
+    public void setC21(Long c21) {
+        this.c21 = c21;
+    }
+
+    public String getC22() {
+        return c22;
+    }
+
+    public void setC22(String c22) {
+        this.c22 = c22;
+    }
+
+    public Double getC23() {
+        return c23;
+    }
+
+    public void setC23(Double c23) {
+        this.c23 = c23;
+    }
+
+    public Date getC24() {
+        return c24;
+    }
+
+    public void setC24(Date c24) {
+        this.c24 = c24;
+    }
+
+    public Integer getC25() {
+        return c25;
+    }
+
+    public void setC25(Integer c25) {
+        this.c25 = c25;
+    }
+
+    public Long getC26() {
+        return c26;
+    }
+
+    public void setC26(Long c26) {
+        this.c26 = c26;
+    }
+
+    public String getC27() {
+        return c27;
+    }
+
+    public void setC27(String c27) {
+        this.c27 = c27;
+    }
+
+    public Double getC28() {
+        return c28;
+    }
+
+    public void setC28(Double c28) {
+        this.c28 = c28;
+    }
+
+    public Date getC29() {
+        return c29;
+    }
+
+    public void setC29(Date c29) {
+        this.c29 = c29;
+    }
+
+    public Integer getC30() {
+        return c30;
+    }
+
+    public void setC30(Integer c30) {
+        this.c30 = c30;
+    }
+
+    public Long getC31() {
+        return c31;
+    }
+
+    public void setC31(Long c31) {
+        this.c31 = c31;
+    }
+
+    public String getC32() {
+        return c32;
+    }
+
+    public void setC32(String c32) {
+        this.c32 = c32;
+    }
+
+    public Double getC33() {
+        return c33;
+    }
+
+    public void setC33(Double c33) {
+        this.c33 = c33;
+    }
+
+    public Date getC34() {
+        return c34;
+    }
+
+    public void setC34(Date c34) {
+        this.c34 = c34;
+    }
+
+    public Integer getC35() {
+        return c35;
+    }
+
+    public void setC35(Integer c35) {
+        this.c35 = c35;
+    }
+
+    public Long getC36() {
+        return c36;
+    }
+
+    public void setC36(Long c36) {
+        this.c36 = c36;
+    }
+
+    public String getC37() {
+        return c37;
+    }
+
+    public void setC37(String c37) {
+        this.c37 = c37;
+    }
+
+    public Double getC38() {
+        return c38;
+    }
+
+    public void setC38(Double c38) {
+        this.c38 = c38;
+    }
+
+    public Date getC39() {
+        return c39;
+    }
+
+    public void setC39(Date c39) {
+        this.c39 = c39;
+    }
+
+    public Integer getC40() {
+        return c40;
+    }
+
+    public void setC40(Integer c40) {
+        this.c40 = c40;
+    }
+
+    public Long getC41() {
+        return c41;
+    }
+
+    public void setC41(Long c41) {
+        this.c41 = c41;
+    }
+
+    public String getC42() {
+        return c42;
+    }
+
+    public void setC42(String c42) {
+        this.c42 = c42;
+    }
+
+    public Double getC43() {
+        return c43;
+    }
+
+    public void setC43(Double c43) {
+        this.c43 = c43;
+    }
+
+    public Date getC44() {
+        return c44;
+    }
+
+    public void setC44(Date c44) {
+        this.c44 = c44;
+    }
+
+    public Integer getC45() {
+        return c45;
+    }
+
+    public void setC45(Integer c45) {
+        this.c45 = c45;
+    }
+
+    public Long getC46() {
+        return c46;
+    }
+
+    public void setC46(Long c46) {
+        this.c46 = c46;
+    }
+
+    public String getC47() {
+        return c47;
+    }
+
+    public void setC47(String c47) {
+        this.c47 = c47;
+    }
+
+    public Double getC48() {
+        return c48;
+    }
+
+    public void setC48(Double c48) {
+        this.c48 = c48;
+    }
+
+    public Date getC49() {
+        return c49;
+    }
+
+    public void setC49(Date c49) {
+        this.c49 = c49;
+    }
+}
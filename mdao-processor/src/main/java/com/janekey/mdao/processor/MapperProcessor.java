@@ -0,0 +1,392 @@
+package com.janekey.mdao.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generate '&lt;model class&gt;_MdaoMapper', the com.janekey.mdao.dao.EntityMapper of every @Table model class,
+ * with the INSERT and UPDATE statements of all columns, typed statement setters and a typed row reader
+ * calling the getters and setters of the columns directly.
+ * Nested classes and classes with private accessors or no default constructor are skipped with a note,
+ * BaseDao maps them by reflection.
+ */
+@SupportedAnnotationTypes(MapperProcessor.TABLE)
+public class MapperProcessor extends AbstractProcessor {
+
+    static final String TABLE = "com.janekey.mdao.annotation.Table";
+    static final String COLUMN = "com.janekey.mdao.annotation.Column";
+    static final String SUFFIX = "_MdaoMapper";
+    static final String ID_COLUMN = "id";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            note(type, "only top level classes get a generated mapper");
+            return;
+        }
+        if (!hasDefaultConstructor(type)) {
+            note(type, "no default constructor for the generated mapper");
+            return;
+        }
+        List<Col> columns = new ArrayList<Col>();
+        for (Element element : type.getEnclosedElements()) {
+            String column = annotationValue(element, COLUMN, "column");
+            if (element.getKind() != ElementKind.FIELD || column == null) {
+                continue;
+            }
+            VariableElement field = (VariableElement) element;
+            Col col = new Col(column, field.asType());
+            ExecutableElement getter = findMethod(type, accessorName("get", field), null);
+            ExecutableElement setter = findMethod(type, accessorName("set", field), field.asType());
+            if (isPrivate(getter) || isPrivate(setter)) {
+                note(type, "private accessor of " + field.getSimpleName() + " can not be called by the generated mapper");
+                return;
+            }
+            col.getter = getter == null ? null : getter.getSimpleName().toString();
+            col.setter = setter == null ? null : setter.getSimpleName().toString();
+            columns.add(col);
+        }
+        String table = annotationValue(type, TABLE, "name");
+        try {
+            write(type, table, columns);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "could not write mapper : " + e.getMessage(), type);
+        }
+    }
+
+    private void write(TypeElement type, String table, List<Col> columns) throws IOException {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String entity = type.getSimpleName().toString();
+        String mapper = entity + SUFFIX;
+        String name = pkg.isUnnamed() ? mapper : pkg.getQualifiedName() + "." + mapper;
+
+        StringBuilder names = new StringBuilder();
+        StringBuilder insertColumns = new StringBuilder();
+        StringBuilder insertValues = new StringBuilder();
+        StringBuilder updateColumns = new StringBuilder();
+        Col id = null;
+        for (Col col : columns) {
+            names.append(names.length() == 0 ? "" : ", ").append(literal(col.column));
+            if (ID_COLUMN.equals(col.column)) {
+                id = col;
+                continue;
+            }
+            insertColumns.append(col.column).append(",");
+            insertValues.append("?,");
+            updateColumns.append(col.column).append(" = ?,");
+        }
+        // 与BaseDao动态生成的语句格式相同
+        String insertSql = "INSERT INTO " + table + " (" + trim(insertColumns) + ") VALUES (" + trim(insertValues) + ")";
+        String updateSql = "UPDATE " + table + " SET " + trim(updateColumns) + " WHERE id = ? ";
+
+        Writer out = processingEnv.getFiler().createSourceFile(name, type).openWriter();
+        try {
+            StringBuilder src = new StringBuilder();
+            if (!pkg.isUnnamed()) {
+                src.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+            }
+            src.append("import com.janekey.mdao.dao.EntityMapper;\n\n");
+            src.append("import java.sql.PreparedStatement;\n");
+            src.append("import java.sql.ResultSet;\n");
+            src.append("import java.sql.SQLException;\n");
+            src.append("import java.sql.Types;\n\n");
+            src.append("/**\n * Generated by ").append(MapperProcessor.class.getName()).append(" from ")
+                    .append(entity).append(", do not edit.\n */\n");
+            src.append("public final class ").append(mapper).append(" implements EntityMapper<").append(entity).append("> {\n\n");
+            src.append("    private static final String[] COLUMNS = {").append(names).append("};\n");
+            src.append("    private static final String INSERT_SQL = ").append(literal(insertSql)).append(";\n");
+            src.append("    private static final String UPDATE_SQL = ").append(literal(updateSql)).append(";\n\n");
+
+            src.append("    public String getTableName() {\n        return ").append(literal(table)).append(";\n    }\n\n");
+            src.append("    public String[] getColumns() {\n        return COLUMNS.clone();\n    }\n\n");
+
+            src.append("    public Object[] getValues(").append(entity).append(" entity) {\n");
+            src.append("        Object[] values = new Object[").append(columns.size()).append("];\n");
+            for (int i = 0; i < columns.size(); i++) {
+                Col col = columns.get(i);
+                if (col.getter != null) {
+                    src.append("        values[").append(i).append("] = entity.").append(col.getter).append("();\n");
+                }
+            }
+            src.append("        return values;\n    }\n\n");
+
+            src.append("    public String getInsertSql() {\n        return INSERT_SQL;\n    }\n\n");
+            src.append("    public String getUpdateSql() {\n        return UPDATE_SQL;\n    }\n\n");
+
+            src.append("    public void bindInsert(PreparedStatement stmt, ").append(entity)
+                    .append(" entity) throws SQLException {\n");
+            int index = 0;
+            for (Col col : columns) {
+                if (col != id) {
+                    bind(src, ++index, col);
+                }
+            }
+            src.append("    }\n\n");
+
+            src.append("    public void bindUpdate(PreparedStatement stmt, ").append(entity)
+                    .append(" entity) throws SQLException {\n");
+            index = 0;
+            for (Col col : columns) {
+                if (col != id) {
+                    bind(src, ++index, col);
+                }
+            }
+            if (id != null) {
+                bind(src, ++index, id);
+            } else {
+                src.append("        stmt.setNull(").append(++index).append(", Types.NULL);\n");
+            }
+            src.append("    }\n\n");
+
+            src.append("    public ").append(entity).append(" readRow(ResultSet rs, int[] indexes) throws SQLException {\n");
+            src.append("        ").append(entity).append(" entity = new ").append(entity).append("();\n");
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).setter != null) {
+                    read(src, i, columns.get(i));
+                }
+            }
+            src.append("        return entity;\n    }\n\n}\n");
+            out.write(src.toString());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Set the parameter with the typed setter of the statement, setNull for null values.
+     */
+    private void bind(StringBuilder src, int index, Col col) {
+        if (col.getter == null) {
+            src.append("        stmt.setNull(").append(index).append(", Types.NULL);\n");
+            return;
+        }
+        String value = "entity." + col.getter + "()";
+        Kind kind = kindOf(col.type);
+        if (col.type.getKind().isPrimitive() && kind.setter != null) {
+            src.append("        stmt.").append(kind.setter).append("(").append(index).append(", ").append(value).append(");\n");
+            return;
+        }
+        String var = "v" + index;
+        src.append("        ").append(typeName(col.type)).append(" ").append(var).append(" = ").append(value).append(";\n");
+        if (kind.setter == null) {
+            src.append("        stmt.setObject(").append(index).append(", ").append(var).append(");\n");
+            return;
+        }
+        src.append("        if (").append(var).append(" == null) {\n");
+        src.append("            stmt.setNull(").append(index).append(", Types.").append(kind.sqlType).append(");\n");
+        src.append("        } else {\n");
+        src.append("            stmt.").append(kind.setter).append("(").append(index).append(", ").append(var).append(");\n");
+        src.append("        }\n");
+    }
+
+    /**
+     * Read the column with the typed getter of the result set, the same as BeanRowMapper.
+     */
+    private void read(StringBuilder src, int column, Col col) {
+        Kind kind = kindOf(col.type);
+        String index = "indexes[" + column + "]";
+        src.append("        if (").append(index).append(" != 0) {\n");
+        if (kind.getter == null) {
+            src.append("            Object value = rs.getObject(").append(index).append(");\n");
+            src.append("            if (value != null) {\n");
+            src.append("                entity.").append(col.setter).append("((").append(boxedName(col.type)).append(") value);\n");
+        } else if (kind.primitive != null) {
+            src.append("            ").append(kind.primitive).append(" value = rs.").append(kind.getter)
+                    .append("(").append(index).append(");\n");
+            src.append("            if (!rs.wasNull()) {\n");
+            src.append("                entity.").append(col.setter).append("(value);\n");
+        } else {
+            src.append("            ").append(typeName(col.type)).append(" value = rs.").append(kind.getter)
+                    .append("(").append(index).append(");\n");
+            src.append("            if (value != null) {\n");
+            src.append("                entity.").append(col.setter).append("(value);\n");
+        }
+        src.append("            }\n        }\n");
+    }
+
+    private Kind kindOf(TypeMirror type) {
+        String name = boxedName(type);
+        for (Kind kind : Kind.values()) {
+            if (name.equals(kind.typeName)) {
+                return kind;
+            }
+        }
+        return Kind.OBJECT;
+    }
+
+    private String typeName(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String boxedName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return typeName(type);
+    }
+
+    private boolean hasDefaultConstructor(TypeElement type) {
+        boolean declared = false;
+        for (Element element : type.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.CONSTRUCTOR) {
+                declared = true;
+                ExecutableElement constructor = (ExecutableElement) element;
+                if (constructor.getParameters().isEmpty() && !isPrivate(constructor)) {
+                    return true;
+                }
+            }
+        }
+        return !declared && !type.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    /**
+     * The declared method found by BaseDao with getDeclaredMethod.
+     */
+    private ExecutableElement findMethod(TypeElement type, String name, TypeMirror parameterType) {
+        for (Element element : type.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.METHOD || !element.getSimpleName().contentEquals(name)) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) element;
+            if (parameterType == null ? method.getParameters().isEmpty()
+                    : method.getParameters().size() == 1 && processingEnv.getTypeUtils().isSameType(
+                    processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType()),
+                    processingEnv.getTypeUtils().erasure(parameterType))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPrivate(Element element) {
+        return element != null && element.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    /**
+     * If field name is 'name' and prefix is 'get', return 'getName'.
+     */
+    private static String accessorName(String prefix, VariableElement field) {
+        String fieldName = field.getSimpleName().toString();
+        return prefix + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    }
+
+    private static String annotationValue(Element element, String annotation, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(annotation)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals(name)) {
+                    return entry.getValue().getValue().toString();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String trim(StringBuilder list) {
+        return list.length() == 0 ? "" : list.substring(0, list.length() - 1);
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                literal.append('\\');
+            }
+            literal.append(c);
+        }
+        return literal.append('"').toString();
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message + ", using reflection", element);
+    }
+
+    /**
+     * A @Column field.
+     */
+    private static final class Col {
+        final String column;
+        final TypeMirror type;
+        String getter;
+        String setter;
+
+        Col(String column, TypeMirror type) {
+            this.column = column;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Typed JDBC accessors of the column types read with typed getters by BeanRowMapper.
+     */
+    private enum Kind {
+        INT("java.lang.Integer", "int", "getInt", "setInt", "INTEGER"),
+        LONG("java.lang.Long", "long", "getLong", "setLong", "BIGINT"),
+        DOUBLE("java.lang.Double", "double", "getDouble", "setDouble", "DOUBLE"),
+        FLOAT("java.lang.Float", "float", "getFloat", "setFloat", "REAL"),
+        SHORT("java.lang.Short", "short", "getShort", "setShort", "SMALLINT"),
+        BYTE("java.lang.Byte", "byte", "getByte", "setByte", "TINYINT"),
+        BOOLEAN("java.lang.Boolean", "boolean", "getBoolean", "setBoolean", "BOOLEAN"),
+        STRING("java.lang.String", null, "getString", "setString", "VARCHAR"),
+        BIG_DECIMAL("java.math.BigDecimal", null, "getBigDecimal", "setBigDecimal", "DECIMAL"),
+        OBJECT(null, null, null, null, null);
+
+        final String typeName;
+        final String primitive;
+        final String getter;
+        final String setter;
+        final String sqlType;
+
+        Kind(String typeName, String primitive, String getter, String setter, String sqlType) {
+            this.typeName = typeName;
+            this.primitive = primitive;
+            this.getter = getter;
+            this.setter = setter;
+            this.sqlType = sqlType;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.janekey.mdao.processor;
+
+import com.janekey.mdao.annotation.Table;
+import com.janekey.mdao.dao.BaseDao;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles sample model classes with the processor and checks that the generated mappers write and
+ * read the same rows as the reflection of BaseDao, on the h2 pool of the tests.
+ */
+public class MapperProcessorTest extends BaseDao {
+
+    private static final String[] PROPERTIES = {"name", "price", "stock", "amount", "active"};
+
+    private static File dir;
+
+    protected String getWritePool() {
+        return "h2";
+    }
+
+    @BeforeClass
+    public static void createDir() throws IOException {
+        dir = Files.createTempDirectory("mdao-processor").toFile();
+    }
+
+    /**
+     * A model class of all column kinds, with the extra columns after the others.
+     */
+    private static String source(String name, String table, String... extraColumns) {
+        StringBuilder src = new StringBuilder();
+        src.append("package sample;\n\n");
+        src.append("import com.janekey.mdao.annotation.Column;\n");
+        src.append("import com.janekey.mdao.annotation.Table;\n\n");
+        src.append("@Table(name = \"").append(table).append("\")\n");
+        src.append("public class ").append(name).append(" {\n");
+        List<String[]> fields = new ArrayList<String[]>(Arrays.asList(
+                new String[]{"Integer", "id"}, new String[]{"String", "name"}, new String[]{"double", "price"},
+                new String[]{"Long", "stock"}, new String[]{"java.math.BigDecimal", "amount"},
+                new String[]{"Boolean", "active"}));
+        for (String column : extraColumns) {
+            fields.add(new String[]{"String", column});
+        }
+        for (String[] field : fields) {
+            src.append("    @Column(column = \"").append(field[1]).append("\")\n");
+            src.append("    private ").append(field[0]).append(' ').append(field[1]).append(";\n");
+        }
+        for (String[] field : fields) {
+            String property = Character.toUpperCase(field[1].charAt(0)) + field[1].substring(1);
+            src.append("    public ").append(field[0]).append(" get").append(property).append("() {\n");
+            src.append("        return ").append(field[1]).append(";\n    }\n");
+            src.append("    public void set").append(property).append("(").append(field[0]).append(" value) {\n");
+            src.append("        this.").append(field[1]).append(" = value;\n    }\n");
+        }
+        return src.append("}\n").toString();
+    }
+
+    /**
+     * Compile the source to the test directory, with the processor or without annotation processing.
+     */
+    private static void compile(String name, String source, boolean process) throws IOException {
+        File file = new File(dir, "src/" + name + ".java");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), source.getBytes(Charset.forName("UTF-8")));
+        File classes = new File(dir, "classes");
+        classes.mkdirs();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            String classpath = new File(Table.class.getProtectionDomain().getCodeSource().getLocation().getPath())
+                    .getPath();
+            List<String> options = new ArrayList<String>(Arrays.asList(
+                    "-classpath", classpath, "-d", classes.getPath(), "-s", classes.getPath()));
+            if (!process) {
+                options.add("-proc:none");
+            }
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(file);
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, units);
+            if (process) {
+                task.setProcessors(Collections.<Processor>singletonList(new MapperProcessor()));
+            }
+            assertTrue(task.call());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Loads the compiled samples and remembers the classes it loaded.
+     */
+    private static final class SampleLoader extends URLClassLoader {
+        final Set<String> loaded = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        SampleLoader() throws IOException {
+            super(new URL[]{new File(dir, "classes").toURI().toURL()}, MapperProcessorTest.class.getClassLoader());
+        }
+
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            Class<?> cl = super.findClass(name);
+            loaded.add(name);
+            return cl;
+        }
+    }
+
+    private static Object get(Object entity, String property) throws Exception {
+        Method getter = entity.getClass().getMethod("get" + Character.toUpperCase(property.charAt(0))
+                + property.substring(1));
+        return getter.invoke(entity);
+    }
+
+    private static void set(Object entity, String property, Object value) throws Exception {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (Method method : entity.getClass().getMethods()) {
+            if (method.getName().equals(name)) {
+                method.invoke(entity, value);
+                return;
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private void createTable(String table, String... extraColumns) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE ").append(table)
+                .append(" (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(32), price DOUBLE, stock BIGINT,")
+                .append(" amount DECIMAL(10, 2), active BOOLEAN");
+        for (String column : extraColumns) {
+            sql.append(", ").append(column).append(" VARCHAR(32)");
+        }
+        executeUpdate(sql.append(")").toString());
+    }
+
+    /**
+     * Insert a row with all columns set, update it, insert a row with null columns and read both back.
+     */
+    private List<Object> writeAndRead(Class<?> cl, String table) throws Exception {
+        Object full = cl.getDeclaredConstructor().newInstance();
+        set(full, "name", "full");
+        set(full, "price", 1.5d);
+        set(full, "stock", 7L);
+        set(full, "amount", new BigDecimal("12.34"));
+        set(full, "active", Boolean.TRUE);
+        int id = executeInsert(full);
+        assertTrue(id > 0);
+        set(full, "id", id);
+        set(full, "name", "updated");
+        set(full, "stock", Long.MAX_VALUE);
+        assertEquals(1, updateObject(full));
+
+        Object partial = cl.getDeclaredConstructor().newInstance();
+        set(partial, "name", "partial");
+        assertTrue(executeInsert(partial) > 0);
+
+        List<Object> rows = new ArrayList<Object>();
+        for (Object row : selectList("SELECT * FROM " + table + " ORDER BY id", cl)) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    public void generatedMapperMatchesReflection() throws Exception {
+        compile("sample/GeneratedItem", source("GeneratedItem", "tb_generated_item"), true);
+        compile("sample/ReflectedItem", source("ReflectedItem", "tb_reflected_item"), false);
+        assertTrue(new File(dir, "classes/sample/GeneratedItem_MdaoMapper.class").isFile());
+        assertFalse(new File(dir, "classes/sample/ReflectedItem_MdaoMapper.class").exists());
+        createTable("tb_generated_item");
+        createTable("tb_reflected_item");
+
+        SampleLoader loader = new SampleLoader();
+        List<Object> generated = writeAndRead(loader.loadClass("sample.GeneratedItem"), "tb_generated_item");
+        List<Object> reflected = writeAndRead(loader.loadClass("sample.ReflectedItem"), "tb_reflected_item");
+        assertTrue(loader.loaded.contains("sample.GeneratedItem_MdaoMapper"));
+
+        assertEquals(2, generated.size());
+        assertEquals(reflected.size(), generated.size());
+        for (int i = 0; i < generated.size(); i++) {
+            for (String property : PROPERTIES) {
+                assertEquals(property, get(reflected.get(i), property), get(generated.get(i), property));
+            }
+        }
+        assertEquals("updated", get(generated.get(0), "name"));
+        assertEquals(Long.MAX_VALUE, get(generated.get(0), "stock"));
+        assertEquals(null, get(generated.get(1), "amount"));
+    }
+
+    @Test
+    public void staleMapperFallsBackToReflection() throws Exception {
+        compile("sample/StaleItem", source("StaleItem", "tb_stale_item"), true);
+        // 模型类增加字段后没有重新生成mapper
+        compile("sample/StaleItem", source("StaleItem", "tb_stale_item", "note"), false);
+        createTable("tb_stale_item", "note");
+
+        SampleLoader loader = new SampleLoader();
+        Class<?> cl = loader.loadClass("sample.StaleItem");
+        Object item = cl.getDeclaredConstructor().newInstance();
+        set(item, "name", "stale");
+        set(item, "note", "kept");
+        assertTrue(executeInsert(item) > 0);
+        List<?> rows = selectList("SELECT * FROM tb_stale_item", cl);
+        assertEquals(1, rows.size());
+        assertEquals("kept", get(rows.get(0), "note"));
+        assertTrue(loader.loaded.contains("sample.StaleItem_MdaoMapper"));
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.janekey.mdao.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keep the rows of a {@link Table} model class loaded by BaseDao.findById in an entity cache.
+ * Writes through updateObject, executeInsert(Object), insertAll and updateAll invalidate the
+ * cached rows, writes by SQL do not.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cache {
+
+    /**
+     * 最多缓存的行数, 超过时淘汰最久未使用的行
+     */
+    public int maxSize() default 1000;
+
+    /**
+     * 缓存的有效时间, 以毫秒计, 0 为不过期
+     */
+    public long ttl() default 60000;
+
+}
@@ -0,0 +1,17 @@
+package com.janekey.mdao.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Track the changes of the {@link Table} model objects loaded by BaseDao.selectList and findById.
+ * updateObject and updateAll of such an object only set the columns changed since it was loaded,
+ * including columns set to null, and do not execute anything when no column changed.
+ * Objects which were not loaded are updated as before, with all non-null columns.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Tracked {
+}
@@ -0,0 +1,70 @@
+package com.janekey.mdao.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss, eviction and expiration counters of one {@link LruCache}.
+ */
+public final class CacheStats implements CacheStatsMBean {
+
+    private final LruCache<?, ?> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    CacheStats(LruCache<?, ?> cache) {
+        this.cache = cache;
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void evict() {
+        evictions.incrementAndGet();
+    }
+
+    void expire() {
+        expirations.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * @return hits / (hits + misses), or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+                + ", expirations=" + getExpirations() + ", size=" + getSize();
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.janekey.mdao.cache;
+
+/**
+ * JMX view of {@link CacheStats}.
+ */
+public interface CacheStatsMBean {
+
+    long getHits();
+
+    long getMisses();
+
+    long getEvictions();
+
+    long getExpirations();
+
+    double getHitRate();
+
+    int getSize();
+
+}
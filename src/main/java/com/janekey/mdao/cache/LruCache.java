@@ -0,0 +1,138 @@
+package com.janekey.mdao.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache which evicts the least recently used entries, entries expire after their ttl.
+ * The bound is on the total weight of the entries, every entry weighs 1 unless a subclass
+ * overrides {@link #weigh(Object, Object)}.
+ * All operations lock the cache, like the statement cache of a connection.
+ */
+public class LruCache<K, V> {
+
+    private long maxWeight;
+    private final long ttl;
+    private final CacheStats stats = new CacheStats(this);
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+    private long weight;
+
+    /**
+     * @param maxWeight 最大总权重, 默认每个条目的权重为1
+     * @param ttl       以毫秒计的默认有效时间, 0 为不过期
+     */
+    public LruCache(long maxWeight, long ttl) {
+        this.maxWeight = maxWeight;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the weight of an entry, 1 by default
+     */
+    protected long weigh(K key, V value) {
+        return 1;
+    }
+
+    /**
+     * @return true if a value is out of date for another reason than its ttl, false by default
+     */
+    protected boolean isStale(V value) {
+        return false;
+    }
+
+    /**
+     * @return the value, or null if there is none or it has expired or is stale
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            stats.miss();
+            return null;
+        }
+        if ((entry.expireTime > 0 && System.currentTimeMillis() > entry.expireTime) || isStale(entry.value)) {
+            remove(key);
+            stats.expire();
+            stats.miss();
+            return null;
+        }
+        stats.hit();
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        put(key, value, ttl);
+    }
+
+    /**
+     * Put an entry with its own ttl. An entry heavier than the maximum weight is not cached.
+     *
+     * @param ttl 以毫秒计的有效时间, 0 为不过期
+     */
+    public synchronized void put(K key, V value, long ttl) {
+        long entryWeight = weigh(key, value);
+        remove(key);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<V>(value, entryWeight, ttl > 0 ? System.currentTimeMillis() + ttl : 0));
+        weight += entryWeight;
+        evict();
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        weight -= entry.weight;
+        return entry.value;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    private void evict() {
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            weight -= it.next().weight;
+            it.remove();
+            stats.evict();
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long weight;
+        final long expireTime;
+
+        Entry(V value, long weight, long expireTime) {
+            this.value = value;
+            this.weight = weight;
+            this.expireTime = expireTime;
+        }
+    }
+
+}
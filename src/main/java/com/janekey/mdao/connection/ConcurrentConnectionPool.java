@@ -0,0 +1,224 @@
+package com.janekey.mdao.connection;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection pool without a pool wide lock, select it with '&lt;pool&gt;.pooltype = concurrent'.
+ * Idle connections are kept in a {@link LinkedTransferQueue}, a returned connection is handed
+ * straight to the thread which has waited longest, or queued when nobody waits.
+ * The number of physical connections is limited by the permits of a {@link Semaphore}.
+ * At most '&lt;pool&gt;.maxwaiters' threads wait in the queue, the others fail at once.
+ */
+class ConcurrentConnectionPool extends ConnectionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(ConcurrentConnectionPool.class);
+
+    // 等待空闲连接时每隔此时间检查一次是否有空出的许可
+    private static final long WAIT_SLICE = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LinkedTransferQueue<PooledConnection> idle = new LinkedTransferQueue<PooledConnection>();
+    private final Permits permits;
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile boolean released;
+
+    public ConcurrentConnectionPool(PoolConfig config) {
+        super(config);
+        int limit = getLimit();
+        this.permits = new Permits(limit > 0 ? limit : Integer.MAX_VALUE);
+    }
+
+    PooledConnection doCheckout(long timeout) throws PoolExhaustedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!released) {
+            PooledConnection pc = idle.poll();
+            if (pc == null && permits.tryAcquire()) {
+                pc = newConnection();
+                if (pc == null) {
+                    permits.release();
+                } else {
+                    checkedOut.incrementAndGet();
+                    return pc;
+                }
+            }
+            if (pc == null) {
+                pc = await(deadline, timeout);
+            }
+            if (isUsable(pc, System.currentTimeMillis())) {
+                checkedOut.incrementAndGet();
+                return pc;
+            }
+            LOGGER.info("从连接池" + poolName + "删除一个无效连接");
+            discard(pc);
+        }
+        throw new PoolExhaustedException(poolName, "pool released");
+    }
+
+    /**
+     * Wait in the idle queue until the deadline, unless maxWaiters threads are already waiting.
+     * The wait is cut into slices of at most WAIT_SLICE, a permit freed by a discarded connection
+     * or a higher limit while this thread was about to wait is taken after at most one slice.
+     */
+    private PooledConnection await(long deadline, long timeout) throws PoolExhaustedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw timedOut(timeout);
+        }
+        int maxWaiters = config.maxWaiters;
+        if (waiters.incrementAndGet() > maxWaiters && maxWaiters > 0) {
+            waiters.decrementAndGet();
+            throw rejected(maxWaiters + " threads already waiting");
+        }
+        try {
+            while (!released) {
+                PooledConnection pc = idle.poll(Math.min(remaining, WAIT_SLICE), TimeUnit.NANOSECONDS);
+                if (pc == null && permits.tryAcquire()) {
+                    pc = newConnection();
+                    if (pc == null) {
+                        permits.release();
+                    }
+                }
+                if (pc != null) {
+                    return pc;
+                }
+                remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw timedOut(timeout);
+                }
+            }
+            throw new PoolExhaustedException(poolName, "pool released");
+        } catch (InterruptedException e) {
+            LOGGER.info(e.getMessage());
+            Thread.currentThread().interrupt();
+            throw new PoolExhaustedException(poolName, "interrupted");
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    void doCheckin(PooledConnection pc) {
+        checkedOut.decrementAndGet();
+        pc.touch();
+        if (released || isExpired(pc, System.currentTimeMillis())) {
+            discard(pc);
+            return;
+        }
+        // 有线程在等待时直接交给等待最久的线程
+        idle.offer(pc);
+    }
+
+    /**
+     * Every connection holds a permit, a lower limit takes permits away until connections are closed.
+     * The permits of a higher limit become connections of the waiting threads at once.
+     */
+    protected void limitChanged(int oldLimit, int newLimit) {
+        if (newLimit > oldLimit) {
+            permits.release(newLimit - oldLimit);
+            for (int i = oldLimit; i < newLimit; i++) {
+                if (!replenish()) {
+                    break;
+                }
+            }
+        } else {
+            permits.reducePermits(oldLimit - newLimit);
+        }
+    }
+
+    void maintain() {
+        long now = System.currentTimeMillis();
+        int idleCount = 0;
+        // 超过目标大小的空闲连接
+        int excess = getLimit() > 0 ? getSize() - getLimit() : 0;
+        PooledConnection extra;
+        while (excess-- > 0 && (extra = idle.poll()) != null) {
+            discard(extra);
+        }
+        for (PooledConnection pc : idle) {
+            if (isEvictable(pc, now) && idle.remove(pc)) {
+                LOGGER.info("从连接池" + poolName + "关闭一个过期的空闲连接");
+                discard(pc);
+            } else {
+                idleCount++;
+            }
+        }
+        while (!released && idleCount < config.minIdle && permits.tryAcquire()) {
+            PooledConnection pc = newConnection();
+            if (pc == null) {
+                permits.release();
+                break;
+            }
+            idle.offer(pc);
+            idleCount++;
+        }
+    }
+
+    public void release() {
+        released = true;
+        PooledConnection pc;
+        while ((pc = idle.poll()) != null) {
+            closeConnection(pc);
+            permits.release();
+        }
+    }
+
+    int getActiveCount() {
+        return checkedOut.get();
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getWaitingCount() {
+        return idle.getWaitingConsumerCount();
+    }
+
+    /**
+     * A Semaphore whose permits can be taken away for a lower limit.
+     */
+    private static final class Permits extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        Permits(int permits) {
+            super(permits);
+        }
+
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    /**
+     * Close a connection and give its permit back, a replacement connection is created for a
+     * waiting thread.
+     */
+    private void discard(PooledConnection pc) {
+        closeConnection(pc);
+        permits.release();
+        replenish();
+    }
+
+    /**
+     * Create a connection for a thread waiting in the idle queue, which does not see a free permit
+     * until its wait slice ends.
+     * @return true if a connection was created
+     */
+    private boolean replenish() {
+        if (released || !idle.hasWaitingConsumer() || !permits.tryAcquire()) {
+            return false;
+        }
+        PooledConnection pc = newConnection();
+        if (pc == null) {
+            permits.release();
+            return false;
+        }
+        idle.offer(pc);
+        return true;
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.janekey.mdao.connection;
+
+import com.janekey.mdao.metrics.Metrics;
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A named pool of connections to one database url.
+ * The implementation is chosen per pool with the '&lt;pool&gt;.pooltype' property of database.properties.
+ * Idle connections are validated on checkout and trimmed by {@link #maintain()}, which the
+ * manager runs every '&lt;pool&gt;.maintenanceinterval' milliseconds.
+ * With '&lt;pool&gt;.breakerfailures' the circuit breaker opens after that many connections in a row
+ * could not be created: for '&lt;pool&gt;.breakercooldown' checkouts which find no idle connection fail
+ * at once instead of waiting, then connections are tried again.
+ * With '&lt;pool&gt;.adaptive' the number of connections is limited by the target of a {@link PoolSizer}
+ * instead of maxconn, see {@link #getLimit()}.
+ */
+abstract class ConnectionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class);
+
+    private static final AtomicInteger count = new AtomicInteger();
+
+    protected final PoolConfig config;
+    protected final String poolName;
+    protected final int maxConn;
+
+    /**
+     * All open connections of the pool, idle or checked out.
+     */
+    private final ConcurrentHashMap<Connection, PooledConnection> connections =
+            new ConcurrentHashMap<Connection, PooledConnection>();
+
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+
+    private final PoolStats stats;
+
+    // 连续创建连接失败的次数
+    private final AtomicInteger failures = new AtomicInteger();
+    // 断路器打开到此时间
+    private volatile long openUntil;
+
+    // 自动调整连接池大小, 或 null
+    private final PoolSizer sizer;
+
+    protected ConnectionPool(PoolConfig config) {
+        this.config = config;
+        this.poolName = config.poolName;
+        this.maxConn = config.maxConn;
+        this.stats = new PoolStats(this);
+        this.sizer = PoolSizer.create(config);
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    PoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 从连接池获取可用连接, 在指定的时间内等待其它线程释放连接.
+     *
+     * @param timeout 以毫秒计的等待时间限制
+     * @return 可用连接
+     * @throws PoolExhaustedException 超时或等待的线程数已达到 maxWaiters
+     */
+    abstract PooledConnection doCheckout(long timeout) throws PoolExhaustedException;
+
+    /**
+     * @return the number of checked out connections
+     */
+    abstract int getActiveCount();
+
+    /**
+     * @return the number of idle connections
+     */
+    abstract int getIdleCount();
+
+    /**
+     * @return the number of threads waiting for a connection
+     */
+    abstract int getWaitingCount();
+
+    /**
+     * {@link #doCheckout(long)}, timed when metrics are enabled or the pool is adaptive.
+     * Fails at once while the circuit breaker is open and no connection is idle.
+     */
+    final PooledConnection checkout(long timeout) throws PoolExhaustedException {
+        if (isCircuitOpen() && getIdleCount() == 0) {
+            throw rejected("circuit open after " + failures.get() + " failed connection attempts");
+        }
+        if (!Metrics.isEnabled() && sizer == null) {
+            return doCheckout(timeout);
+        }
+        long start = System.nanoTime();
+        PooledConnection pc;
+        try {
+            pc = doCheckout(timeout);
+        } catch (PoolExhaustedException e) {
+            if (sizer != null) {
+                sizer.failed();
+            }
+            throw e;
+        }
+        long now = System.nanoTime();
+        long wait = now - start;
+        if (sizer != null) {
+            sizer.checkedOut(wait);
+            pc.checkedOut(now);
+        }
+        if (Metrics.isEnabled()) {
+            stats.checkedOut(wait);
+            Metrics.connectionCheckedOut(poolName, wait);
+        }
+        return pc;
+    }
+
+    /**
+     * @return the exception for a checkout which waited timeout milliseconds in vain
+     */
+    protected PoolExhaustedException timedOut(long timeout) {
+        LOGGER.info("获取连接超时, pool : " + poolName);
+        if (Metrics.isEnabled()) {
+            long wait = TimeUnit.MILLISECONDS.toNanos(timeout);
+            stats.timeout();
+            Metrics.checkoutTimeout(poolName, wait);
+        }
+        return new PoolExhaustedException(poolName, "no connection within " + timeout + " ms");
+    }
+
+    /**
+     * @return the exception for a checkout failed without waiting
+     */
+    protected PoolExhaustedException rejected(String reason) {
+        if (Metrics.isEnabled()) {
+            stats.rejected();
+        }
+        return new PoolExhaustedException(poolName, reason);
+    }
+
+    /**
+     * @return true while checkouts fail at once because connections could not be created
+     */
+    boolean isCircuitOpen() {
+        return config.breakerFailures > 0 && System.currentTimeMillis() < openUntil;
+    }
+
+    /**
+     * 将不再使用的连接返回给连接池
+     */
+    abstract void doCheckin(PooledConnection pc);
+
+    /**
+     * {@link #doCheckin(PooledConnection)}, measuring how long the connection was used when the pool is adaptive.
+     */
+    final void checkin(PooledConnection pc) {
+        if (sizer != null) {
+            sizer.checkedIn(pc.holdTime(System.nanoTime()));
+        }
+        doCheckin(pc);
+    }
+
+    /**
+     * @return the maximum number of connections, the target size in adaptive mode, 0 for no limit
+     */
+    int getLimit() {
+        return sizer != null ? sizer.getTarget() : maxConn;
+    }
+
+    /**
+     * Let the adaptive sizing choose a new target size, run by the manager before {@link #maintain()}.
+     */
+    final void resize() {
+        if (sizer == null) {
+            return;
+        }
+        int oldLimit = sizer.getTarget();
+        int newLimit = sizer.resize();
+        if (newLimit != oldLimit) {
+            limitChanged(oldLimit, newLimit);
+        }
+    }
+
+    /**
+     * Called when {@link #getLimit()} changed. Connections over a lower limit are closed by the
+     * maintenance when they are idle.
+     */
+    protected void limitChanged(int oldLimit, int newLimit) {
+    }
+
+    /**
+     * @return the number of target size changes of the adaptive sizing
+     */
+    long getResizes() {
+        return sizer == null ? 0 : sizer.getResizes();
+    }
+
+    /**
+     * Close idle connections past the idle timeout or max lifetime, then create connections
+     * until the pool has minIdle idle connections.
+     */
+    abstract void maintain();
+
+    /**
+     * 关闭所有连接
+     */
+    public abstract void release();
+
+    public Connection getConnection(long timeout) {
+        try {
+            return checkout(timeout).getConnection();
+        } catch (PoolExhaustedException e) {
+            LOGGER.info(e.getMessage());
+            return null;
+        }
+    }
+
+    public void freeConnection(Connection con) {
+        if (con == null) {
+            return;
+        }
+        PooledConnection pc = connections.get(con);
+        if (pc != null) {
+            checkin(pc);
+        } else {
+            LOGGER.info("连接不属于连接池" + poolName);
+        }
+    }
+
+    public PoolStats getStats() {
+        return stats;
+    }
+
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * @return the number of open connections, idle or checked out
+     */
+    public int getSize() {
+        return connections.size();
+    }
+
+    /**
+     * 创建新的连接
+     */
+    protected PooledConnection newConnection() {
+        Connection con;
+        long start = System.nanoTime();
+        try {
+            if (config.user == null || "".equals(config.user)) {
+                con = DriverManager.getConnection(config.url);
+            } else {
+                con = DriverManager.getConnection(config.url, config.user, config.password);
+            }
+            if (Metrics.isEnabled()) {
+                long nanos = System.nanoTime() - start;
+                stats.created(nanos);
+                Metrics.connectionCreated(poolName, nanos);
+            }
+            LOGGER.info("create a new connection(" + count.incrementAndGet() + ") from pool : " + poolName);
+        } catch (SQLException e) {
+            LOGGER.info("无法创建下列URL的连接: " + config.url);
+            LOGGER.info(e.getMessage());
+            connectFailed();
+            return null;
+        }
+        if (failures.getAndSet(0) >= config.breakerFailures && config.breakerFailures > 0) {
+            openUntil = 0;
+            LOGGER.info("circuit of pool " + poolName + " closed");
+        }
+        StatementCache cache = config.statementCacheSize > 0
+                ? new StatementCache(con, config.statementCacheSize, statementCacheStats) : null;
+        PooledConnection pc = new PooledConnection(con, cache);
+        connections.put(con, pc);
+        return pc;
+    }
+
+    /**
+     * Open the circuit breaker after breakerFailures failures in a row, again after every
+     * failure while it stays open or half open.
+     */
+    private void connectFailed() {
+        int count = failures.incrementAndGet();
+        if (config.breakerFailures > 0 && count >= config.breakerFailures) {
+            openUntil = System.currentTimeMillis() + config.breakerCooldown;
+            LOGGER.error("circuit of pool " + poolName + " open for " + config.breakerCooldown
+                    + " ms after " + count + " failed connection attempts");
+        }
+    }
+
+    /**
+     * Close a connection which is removed from the pool.
+     */
+    protected void closeConnection(PooledConnection pc) {
+        connections.remove(pc.getConnection());
+        try {
+            pc.getConnection().close();
+            LOGGER.info("关闭连接池" + poolName + "中的一个连接");
+        } catch (SQLException e) {
+            LOGGER.info("无法关闭连接池" + poolName + "中的连接" + "\n");
+            LOGGER.info(e.getMessage());
+        }
+    }
+
+    /**
+     * Check a connection taken from the idle connections. It is validated with isValid only when
+     * it has been idle longer than validationIdle, otherwise isClosed is enough.
+     */
+    protected boolean isUsable(PooledConnection pc, long now) {
+        if (isExpired(pc, now)) {
+            return false;
+        }
+        Connection con = pc.getConnection();
+        try {
+            if (config.validationIdle >= 0 && pc.idleTime(now) > config.validationIdle) {
+                return con.isValid(config.validationTimeout);
+            }
+            return !con.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the connection is older than maxLifetime
+     */
+    protected boolean isExpired(PooledConnection pc, long now) {
+        return config.maxLifetime > 0 && pc.age(now) > config.maxLifetime;
+    }
+
+    /**
+     * @return true if an idle connection should be closed by the maintenance
+     */
+    protected boolean isEvictable(PooledConnection pc, long now) {
+        return isExpired(pc, now) || (config.idleTimeout > 0 && pc.idleTime(now) > config.idleTimeout);
+    }
+
+}
@@ -1,8 +1,10 @@
 package com.janekey.mdao.connection;
 
+import com.janekey.mdao.metrics.Metrics;
 import org.apache.log4j.Logger;
 
 import java.sql.*;
+import java.util.Arrays;
 
 /**
  * Database connection encapsulate
@@ -17,6 +19,9 @@ public class DBConnection {
 	// 连接池管理
 	private DBConnectionManager connMgr = null;
 
+	// 连接池中的连接
+	private PooledConnection pooledConn = null;
+
 	// 连接对象
 	private Connection conn = null;
 
@@ -25,6 +30,22 @@ public class DBConnection {
 
 	private ResultSet rs = null;
 
+	// 是否修改过prepStmt的fetchSize
+	private boolean fetchSizeChanged = false;
+
+	// 是否修改过prepStmt的maxRows
+	private boolean maxRowsChanged = false;
+
+	// 当前语句的SQL, 用于统计
+	private String sql;
+
+	// 已执行但还未统计的查询
+	private long queryNanos = -1;
+	private int queryRows = -1;
+
+	// 当前线程的事务, 使用事务的连接
+	private Transaction tx = null;
+
 	public CallableStatement cstmt;
 
 	public String poolName = "";
@@ -38,8 +59,8 @@ public class DBConnection {
 	public DBConnection(String poolName, String sql) throws SQLException {
 		this.poolName = poolName;
 		connMgr = DBConnectionManager.getInstance();
-		this.conn = connMgr.getConnection(poolName);
-		prepStmt = conn.prepareStatement(sql);
+		checkout();
+		prepareStatement(sql);
 	}
 
 	/**
@@ -51,7 +72,19 @@ public class DBConnection {
 	public DBConnection(String poolName) throws SQLException {
 		this.poolName = poolName;
 		connMgr = DBConnectionManager.getInstance();
-		this.conn = connMgr.getConnection(poolName);
+		checkout();
+	}
+
+	private void checkout() throws SQLException {
+		Transaction current = Transaction.current();
+		if (current != null && current.getPoolName().equals(poolName)) {
+			this.tx = current;
+			this.pooledConn = current.getPooledConnection();
+			this.conn = pooledConn.getConnection();
+			return;
+		}
+		this.pooledConn = connMgr.checkout(poolName);
+		this.conn = pooledConn.getConnection();
 	}
 	
 	/**
@@ -61,12 +94,86 @@ public class DBConnection {
 	 * @throws java.sql.SQLException
 	 */
 	public void prepareStatement(String sql) throws SQLException {
-		prepStmt = conn.prepareStatement(sql);
-		
+		prepareStatement(sql, -1);
 	}
 	
+	/**
+	 * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS, Statement.NO_GENERATED_KEYS or -1 for prepareStatement(sql)
+	 */
 	public void prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-		prepStmt = conn.prepareStatement(sql, autoGeneratedKeys);
+		releaseStatement();
+		if (tx != null) {
+			// 事务中缓存的更新先于此语句执行
+			tx.flush();
+		}
+		try {
+			prepStmt = pooledConn.prepareStatement(sql, autoGeneratedKeys);
+		} catch (SQLException e) {
+			failed();
+			throw e;
+		}
+		this.sql = sql;
+	}
+
+	/**
+	 * A statement failed, the transaction can only be rolled back.
+	 */
+	private void failed() {
+		if (tx != null) {
+			tx.setRollbackOnly();
+		}
+	}
+
+	/**
+	 * 关闭结果集, 将PreparedStatement还给语句缓存
+	 */
+	private void releaseStatement() throws SQLException {
+		if (queryNanos >= 0) {
+			Metrics.statementExecuted(poolName, sql, queryNanos, queryRows, false);
+			queryNanos = -1;
+		}
+		if (this.rs != null) {
+			this.rs.close();
+			this.rs = null;
+		}
+		if (this.prepStmt != null) {
+			PreparedStatement stmt = this.prepStmt;
+			this.prepStmt = null;
+			if (fetchSizeChanged) {
+				fetchSizeChanged = false;
+				stmt.setFetchSize(0);
+			}
+			if (maxRowsChanged) {
+				maxRowsChanged = false;
+				stmt.setMaxRows(0);
+			}
+			pooledConn.releaseStatement(stmt);
+		}
+	}
+
+	/**
+	 * 设置每次从数据库读取的行数, 在executeQuery之前调用.
+	 * MySQL 使用 Integer.MIN_VALUE 逐行读取结果集
+	 */
+	public void setFetchSize(int rows) throws SQLException {
+		prepStmt.setFetchSize(rows);
+		fetchSizeChanged = true;
+	}
+
+	/**
+	 * 限制查询返回的最大行数, 在executeQuery之前调用. 语句释放时恢复为不限制
+	 */
+	public void setMaxRows(int rows) throws SQLException {
+		prepStmt.setMaxRows(rows);
+		maxRowsChanged = true;
+	}
+
+	/**
+	 * 连接池配置的流式查询读取行数, 见 '&lt;pool&gt;.fetchsize'
+	 */
+	public int getStreamingFetchSize() {
+		PoolConfig config = connMgr.getPoolConfig(poolName);
+		return config == null ? 0 : config.fetchSize;
 	}
 
 	/**
@@ -75,17 +182,60 @@ public class DBConnection {
 	 * @throws java.sql.SQLException
 	 */
 	public ResultSet executeQuery() throws SQLException {
-		rs = this.prepStmt.executeQuery();
+		if (!Metrics.isEnabled()) {
+			try {
+				rs = this.prepStmt.executeQuery();
+			} catch (SQLException e) {
+				failed();
+				throw e;
+			}
+			return rs;
+		}
+		long start = System.nanoTime();
+		try {
+			rs = this.prepStmt.executeQuery();
+		} catch (SQLException e) {
+			failed();
+			Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, -1, true);
+			throw e;
+		}
+		// 读取的行数由 countRows 给出, 在释放语句时统计
+		queryNanos = System.nanoTime() - start;
+		queryRows = -1;
 		return rs;
 	}
 
+	/**
+	 * 给出上一次查询读取的行数, 用于统计
+	 */
+	public void countRows(int rows) {
+		queryRows = rows;
+	}
+
 	/**
 	 * 用于执行 INSERT、UPDATE 或 DELETE 语句以及 SQL DDL（数据定义语言）语句，例如 CREATE TABLE 和 DROP TABLE。
 	 * @return 
 	 * @throws java.sql.SQLException
 	 */
 	public int executeUpdate() throws SQLException {
-		return this.prepStmt.executeUpdate();
+		if (!Metrics.isEnabled()) {
+			try {
+				return this.prepStmt.executeUpdate();
+			} catch (SQLException e) {
+				failed();
+				throw e;
+			}
+		}
+		long start = System.nanoTime();
+		try {
+			int rows = this.prepStmt.executeUpdate();
+			Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, rows, false);
+			return rows;
+		} catch (SQLException e) {
+			failed();
+			Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, -1, true);
+			throw e;
+		}
 	}
 	
 	/**
@@ -93,7 +243,7 @@ public class DBConnection {
 	 * @return 返回插入的ID
 	 */
 	public int executeInsert() throws SQLException {
-		this.prepStmt.executeUpdate();
+		this.executeUpdate();
 		int autoIncKeyFromApi = -1 ;
 		ResultSet rs2 = null;
 		try {
@@ -109,13 +259,40 @@ public class DBConnection {
 		return autoIncKeyFromApi;
 	} 
 
+	/**
+	 * 读取上一次INSERT或批处理生成的ID
+	 * @param rows 插入的行数
+	 * @return 每行的ID, 没有返回ID的行为-1
+	 */
+	public int[] getGeneratedKeys(int rows) throws SQLException {
+		int[] keys = new int[rows];
+		Arrays.fill(keys, -1);
+		ResultSet rs2 = null;
+		try {
+			rs2 = prepStmt.getGeneratedKeys();
+			for (int i = 0; i < rows && rs2.next(); i++) {
+				keys[i] = rs2.getInt(1);
+			}
+		} finally {
+			if(rs2 != null && !rs2.isClosed()) {
+				rs2.close();
+			}
+		}
+		return keys;
+	}
+
 	/**
 	 * 用于执行返回多个结果集、多个更新计数或二者组合的语句。
 	 * @return
 	 * @throws java.sql.SQLException
 	 */
 	public boolean execute() throws SQLException {
-		return this.prepStmt.execute();
+		try {
+			return this.prepStmt.execute();
+		} catch (SQLException e) {
+			failed();
+			throw e;
+		}
 	}
 
 	/**
@@ -152,7 +329,28 @@ public class DBConnection {
 	 * 批处理执行
 	 */
 	public int[] executeBatch() throws SQLException {
-		return prepStmt.executeBatch();
+		if (!Metrics.isEnabled()) {
+			try {
+				return prepStmt.executeBatch();
+			} catch (SQLException e) {
+				failed();
+				throw e;
+			}
+		}
+		long start = System.nanoTime();
+		try {
+			int[] counts = prepStmt.executeBatch();
+			int rows = 0;
+			for (int count : counts) {
+				rows += Math.max(count, 0);
+			}
+			Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, rows, false);
+			return counts;
+		} catch (SQLException e) {
+			failed();
+			Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, -1, true);
+			throw e;
+		}
 	}
 	
 	/**
@@ -201,10 +399,27 @@ public class DBConnection {
 		return prepStmt;
 	}
 
+	public boolean getAutoCommit() throws SQLException {
+		return conn.getAutoCommit();
+	}
+
+	/**
+	 * 在事务中时不改变, 由事务结束时恢复
+	 */
+	public void setAutoCommit(boolean autoCommit) throws SQLException {
+		if (tx == null) {
+			conn.setAutoCommit(autoCommit);
+		}
+	}
+
 	/**
 	 * 使所有上一次提交/回滚后进行的更改成为持久更改，并释放此 Connection 对象当前持有的所有数据库锁。
+	 * 在事务中时由事务提交
 	 */
 	public void commit() {
+		if (tx != null) {
+			return;
+		}
 		try {
 			conn.commit();
 		} catch (Exception e) {
@@ -212,10 +427,26 @@ public class DBConnection {
 		}
 	}
 
+	/**
+	 * 同 {@link #commit()}, 但提交失败时抛出异常, 调用者应回滚并报告失败.
+	 * 在事务中时由事务提交
+	 */
+	public void commitChecked() throws SQLException {
+		if (tx != null) {
+			return;
+		}
+		conn.commit();
+	}
+
 	/**
 	 * 取消在当前事务中进行的所有更改，并释放此 Connection 对象当前持有的所有数据库锁。
+	 * 在事务中时使事务在结束时回滚
 	 */
 	public void rollback() {
+		if (tx != null) {
+			tx.setRollbackOnly();
+			return;
+		}
 		try {
 			conn.rollback();
 		} catch (Exception e) {
@@ -228,15 +459,20 @@ public class DBConnection {
 	 * 
 	 */
 	public void free() {
-		try {
-			if (this.rs != null) {
-				this.rs.close();
-				this.rs = null;
-			}
-			if (this.prepStmt != null) {
-				this.prepStmt.close();
-				this.prepStmt = null;
+		if (tx != null) {
+			// 连接属于事务, 由事务提交和回收
+			try {
+				releaseStatement();
+			} catch (SQLException e) {
+				logger.info(e.getMessage());
 			}
+			tx = null;
+			pooledConn = null;
+			conn = null;
+			return;
+		}
+		try {
+			releaseStatement();
 
 			if(conn != null) {
 				if(!conn.getAutoCommit()) {
@@ -248,6 +484,10 @@ public class DBConnection {
 			logger.info(e.getMessage());
 		}
 		// 将用过的连接再回收到池中,在回收连接前,要保证上一连接操作完
-		connMgr.freeConnection(poolName, this.conn);
+		if (pooledConn != null) {
+			connMgr.checkin(poolName, pooledConn);
+			pooledConn = null;
+			conn = null;
+		}
 	}
 }
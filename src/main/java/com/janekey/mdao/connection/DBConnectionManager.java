@@ -1,5 +1,6 @@
 package com.janekey.mdao.connection;
 
+import com.janekey.mdao.metrics.Metrics;
 import org.apache.log4j.Logger;
 
 import java.io.InputStream;
@@ -8,6 +9,10 @@ import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An instance map multiple pools, a pool map multiple connection.
@@ -23,13 +28,22 @@ public class DBConnectionManager {
 	private static final Logger LOGGER = Logger.getLogger(DBConnectionManager.class);
 	private static final Object LOCK = new Object();
     private static final String LOG_MSG = "[jcms-dbconnection] ";
-    private static final int WAIT_TIME = 30;    // default wait time : 30s.
 
-	private static int count = 0;
 //	private static int clientLinks;
 	private Vector<Driver> drivers = new Vector<Driver>();
 	
-	private Hashtable<String, DBConnectionPool> pools = new Hashtable<String, DBConnectionPool>();
+	private Hashtable<String, ConnectionPool> pools = new Hashtable<String, ConnectionPool>();
+
+	// 主库连接池名 -> 只读副本
+	private Hashtable<String, ReplicaSet> replicaSets = new Hashtable<String, ReplicaSet>();
+
+	// 副本连接池名 -> 副本的健康状态
+	private Hashtable<String, ReplicaSet.Replica> replicas = new Hashtable<String, ReplicaSet.Replica>();
+
+	// 表名 -> 分片规则
+	private Hashtable<String, ShardRule> shardRules = new Hashtable<String, ShardRule>();
+
+	private ScheduledExecutorService maintenance;
 
 	private DBConnectionManager() {
 		init();
@@ -61,6 +75,7 @@ public class DBConnectionManager {
 			LOGGER.error(LOG_MSG + "could not read the database.properties file. Make sure database.properties in CLASSPATH directory.");
 			return;
 		}
+        Metrics.setEnabled(Boolean.parseBoolean(dbProps.getProperty("metrics", "false").trim()));
         loadDrivers(dbProps);
         createPools(dbProps);
 	}
@@ -101,29 +116,114 @@ public class DBConnectionManager {
 					LOGGER.info(LOG_MSG + "No url for the pool : " + poolName);
 					continue;
 				}
-				String user = props.getProperty(poolName + ".user");
-				String password = props.getProperty(poolName + ".password");
-				String maxconn = props.getProperty(poolName + ".maxconn", "10");
-				int max;
-				try {
-                    max = Integer.valueOf(maxconn);
-				} catch (NumberFormatException e) {
-					LOGGER.error(LOG_MSG + "error max connection limit: " + maxconn + " . pool: " + poolName);
-					max = 0;
+				PoolConfig config = PoolConfig.load(poolName, props);
+				ConnectionPool pool;
+				if ("concurrent".equalsIgnoreCase(config.poolType)) {
+					pool = new ConcurrentConnectionPool(config);
+				} else {
+					pool = new DBConnectionPool(config);
 				}
-				DBConnectionPool pool = new DBConnectionPool(poolName, url,
-						user, password, max);
 				pools.put(poolName, pool);
+				Metrics.registerMBean("Pool", poolName, pool.getStats());
 				LOGGER.info(LOG_MSG + "create pool success :" + poolName);
+				scheduleMaintenance(pool);
+			}
+		}
+		createReplicaSets();
+		createShardRules(props);
+	}
+
+	/**
+	 * Read the 'shard.&lt;table&gt;.*' rules of the sharded tables.
+	 */
+	private void createShardRules(Properties props) {
+		Enumeration<?> propNames = props.propertyNames();
+		while (propNames.hasMoreElements()) {
+			String name = (String) propNames.nextElement();
+			if (name.startsWith("shard.") && name.endsWith(".pools")) {
+				String table = name.substring("shard.".length(), name.length() - ".pools".length());
+				ShardRule rule = ShardRule.load(table, props);
+				if (rule == null) {
+					continue;
+				}
+				boolean valid = true;
+				for (String poolName : rule.getPools()) {
+					if (!pools.containsKey(poolName)) {
+						LOGGER.error(LOG_MSG + "No pool " + poolName + " for the sharded table : " + table);
+						valid = false;
+					}
+				}
+				if (valid) {
+					shardRules.put(rule.getTable(), rule);
+					LOGGER.info(LOG_MSG + "table " + table + " sharded on pools : " + rule.getPools().length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Group the pools declaring '&lt;pool&gt;.replicas' with their replica pools.
+	 */
+	private void createReplicaSets() {
+		for (ConnectionPool primary : pools.values()) {
+			String[] names = primary.getConfig().replicas;
+			List<ConnectionPool> replicaPools = new ArrayList<ConnectionPool>();
+			for (String name : names) {
+				ConnectionPool replica = pools.get(name);
+				if (replica == null || replica == primary) {
+					LOGGER.error(LOG_MSG + "No replica pool " + name + " for the pool : " + primary.getPoolName());
+				} else {
+					replicaPools.add(replica);
+				}
 			}
+			if (replicaPools.isEmpty()) {
+				continue;
+			}
+			ReplicaSet set = new ReplicaSet(primary, replicaPools.toArray(new ConnectionPool[replicaPools.size()]));
+			replicaSets.put(primary.getPoolName(), set);
+			for (ConnectionPool replica : replicaPools) {
+				replicas.put(replica.getPoolName(), set.get(replica.getPoolName()));
+			}
+			LOGGER.info(LOG_MSG + "pool " + primary.getPoolName() + " reads from replicas : " + replicaPools.size());
 		}
 	}
 
+	/**
+	 * Run the maintenance of the pool at its interval, the first run prewarms minIdle connections.
+	 */
+	private void scheduleMaintenance(final ConnectionPool pool) {
+		long interval = pool.getConfig().maintenanceInterval;
+		if (interval <= 0) {
+			return;
+		}
+		synchronized (this) {
+			if (maintenance == null) {
+				maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "mdao-pool-maintenance");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+		}
+		maintenance.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					pool.resize();
+					pool.maintain();
+				} catch (Throwable e) {
+					LOGGER.error(LOG_MSG + "maintain pool " + pool.getPoolName() + " failed", e);
+				}
+			}
+		}, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
 	/**
 	 * Free connnection and return to the pool.
 	 */
 	public void freeConnection(String pooName, Connection con) {
-		DBConnectionPool pool = pools.get(pooName);
+		ConnectionPool pool = pools.get(pooName);
 		if (pool != null) {
 			pool.freeConnection(con);
 		} else {
@@ -132,13 +232,13 @@ public class DBConnectionManager {
 	}
 
 	/**
-	 * Get a useful connection. If there is no useful connection, and connections' number bigger than max limit, create new connection and return it. Otherwise wait another connection from other thread in default wait time.
+	 * Get a useful connection. If there is no useful connection, and connections' number bigger than max limit, create new connection and return it. Otherwise wait another connection from other thread in '&lt;pool&gt;.checkouttimeout'.
 	 * @return An useful connection or null
 	 */
 	public Connection getConnection(String pooName) {
-		DBConnectionPool pool = pools.get(pooName);
+		ConnectionPool pool = pools.get(pooName);
 		if (pool != null) {
-			return pool.getConnection(WAIT_TIME * 1000);
+			return pool.getConnection(pool.getConfig().checkoutTimeout);
 		} else {
 			LOGGER.info(LOG_MSG + "Could not find the pool : " + pooName);
 			return null;
@@ -155,13 +255,113 @@ public class DBConnectionManager {
 	 * @return Connection 可用连接或null
 	 */
 	public Connection getConnection(String poolName, long time) {
-		DBConnectionPool pool = pools.get(poolName);
+		ConnectionPool pool = pools.get(poolName);
 		if (pool != null) {
 			return pool.getConnection(time);
 		}
 		return null;
 	}
 
+	/**
+	 * Check out a pooled connection for DBConnection, waiting at most '&lt;pool&gt;.checkouttimeout'.
+	 * @return the pooled connection
+	 * @throws PoolExhaustedException when no connection could be checked out
+	 * @throws SQLException when there is no such pool
+	 */
+	PooledConnection checkout(String poolName) throws SQLException {
+		ConnectionPool pool = pools.get(poolName);
+		if (pool == null) {
+			LOGGER.info(LOG_MSG + "Could not find the pool : " + poolName);
+			throw new SQLException(LOG_MSG + "Could not find the pool : " + poolName);
+		}
+		ReplicaSet.Replica replica = replicas.get(poolName);
+		try {
+			PooledConnection pc = pool.checkout(pool.getConfig().checkoutTimeout);
+			if (replica != null) {
+				replica.succeeded();
+			}
+			return pc;
+		} catch (PoolExhaustedException e) {
+			if (replica != null) {
+				replica.failed();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Return a pooled connection of {@link #checkout(String)}.
+	 */
+	void checkin(String poolName, PooledConnection pc) {
+		ConnectionPool pool = pools.get(poolName);
+		if (pool != null) {
+			pool.checkin(pc);
+		} else {
+			LOGGER.info(LOG_MSG + "Count not find the pool : " + poolName);
+		}
+	}
+
+	/**
+	 * Choose the pool for a read from the pool: one of its healthy '&lt;pool&gt;.replicas',
+	 * or the pool itself when it has no replicas or none is available.
+	 * @param poolName 主库连接池名字
+	 * @return 读操作使用的连接池名字
+	 */
+	public String getReadPool(String poolName) {
+		ReplicaSet set = replicaSets.get(poolName);
+		return set == null ? poolName : set.choose();
+	}
+
+	/**
+	 * @return the sharding rule of the table, or null if the table is not sharded
+	 */
+	public ShardRule getShardRule(String table) {
+		return shardRules.get(table.toLowerCase());
+	}
+
+	/**
+	 * @return the '&lt;pool&gt;.maxconn' of the pool, 0 for no limit, or -1 if there is no such pool
+	 */
+	public int getMaxConnections(String poolName) {
+		ConnectionPool pool = pools.get(poolName);
+		return pool == null ? -1 : pool.getConfig().maxConn;
+	}
+
+	/**
+	 * @return the current maximum number of connections of the pool, the target size of an adaptive pool,
+	 * 0 for no limit, or -1 if there is no such pool
+	 */
+	public int getConnectionLimit(String poolName) {
+		ConnectionPool pool = pools.get(poolName);
+		return pool == null ? -1 : pool.getLimit();
+	}
+
+	/**
+	 * @return the settings of the pool or null if there is no such pool
+	 */
+	PoolConfig getPoolConfig(String poolName) {
+		ConnectionPool pool = pools.get(poolName);
+		return pool == null ? null : pool.getConfig();
+	}
+
+	/**
+	 * Saturation, wait time and connection creation statistics of a pool, also published through JMX.
+	 * @return the statistics or null if there is no such pool
+	 */
+	public PoolStats getPoolStats(String poolName) {
+		ConnectionPool pool = pools.get(poolName);
+		return pool == null ? null : pool.getStats();
+	}
+
+	/**
+	 * Hit, miss and eviction counters of the statement caches of a pool, see '&lt;pool&gt;.stmtcachesize'.
+	 * @return the counters or null if there is no such pool
+	 */
+	public StatementCacheStats getStatementCacheStats(String poolName) {
+		ConnectionPool pool = pools.get(poolName);
+		return pool == null ? null : pool.getStatementCacheStats();
+	}
+
 	/**
 	 * 关闭所有连接,撤销驱动程序的注册
 	 */
@@ -171,9 +371,12 @@ public class DBConnectionManager {
 //			return;
 //		}
 
-		Enumeration<DBConnectionPool> allPools = pools.elements();
+		if (maintenance != null) {
+			maintenance.shutdownNow();
+		}
+		Enumeration<ConnectionPool> allPools = pools.elements();
 		while (allPools.hasMoreElements()) {
-			DBConnectionPool pool = allPools.nextElement();
+			ConnectionPool pool = allPools.nextElement();
 			pool.release();
 		}
 		Enumeration<Driver> allDrivers = drivers.elements();
@@ -190,140 +393,172 @@ public class DBConnectionManager {
 
 	/**
 	 * 此内部类定义了一个连接池.它能够根据要求创建新连接,直到预定的最大限制值
+	 * 所有的获取和释放都在同一个对象锁上进行, 高并发时可以使用 ConcurrentConnectionPool
 	 */
-	class DBConnectionPool {
+	class DBConnectionPool extends ConnectionPool {
 		private int checkedOut;
-		private Vector<Connection> freeConnections = new Vector<Connection>();
-		private int maxConn;
-		private String poolName;
-		private String password;
-		private String URL;
-		private String user;
+		// 正在为 minIdle 创建的连接数
+		private int creating;
+		// 等待连接的线程数
+		private int waiting;
+		private Vector<PooledConnection> freeConnections = new Vector<PooledConnection>();
 
 		/**
 		 * 创建新的连接池
 		 * 
-		 * @param poolName
-		 *            连接池名字
-		 * @param URL
-		 *            数据库的JDBC URL
-		 * @param user
-		 *            数据库帐号,或 null
-		 * @param password
-		 *            密码,或 null
-		 * @param maxConn
-		 *            此连接池允许建立的最大连接数
+		 * @param config
+		 *            连接池配置
 		 */
-		public DBConnectionPool(String poolName, String URL, String user,
-				String password, int maxConn) {
-			this.poolName = poolName;
-			this.URL = URL;
-			this.user = user;
-			this.password = password;
-			this.maxConn = maxConn;
+		public DBConnectionPool(PoolConfig config) {
+			super(config);
 		}
 
 		/**
 		 * 将不再使用的连接返回给连接池
 		 * 
-		 * @param con 客户程序释放的连接
+		 * @param pc 客户程序释放的连接
 		 */
-		public synchronized void freeConnection(Connection con) {
-			// 将指定连接加入到向量末尾
-			freeConnections.addElement(con);
+		synchronized void doCheckin(PooledConnection pc) {
 			checkedOut--;
+			pc.touch();
+			if (isExpired(pc, System.currentTimeMillis())) {
+				closeConnection(pc);
+			} else {
+				// 将指定连接加入到向量末尾
+				freeConnections.addElement(pc);
+			}
 			notifyAll();
 		}
 
 		/**
 		 * 从连接池获得一个可用连接.如没有空闲的连接且当前连接数小于最大连接 数限制,则创建新连接.
-		 * 如原来登记为可用的连接不再有效,则从向量删除之, 然后递归调用自己以尝试新的可用连接.
+		 * 如原来登记为可用的连接不再有效,则从向量删除之, 然后尝试下一个可用连接.
 		 */
-		public synchronized Connection getConnection() {
-			Connection con = null;
-			if (freeConnections.size() > 0) {// 获取向量中第一个可用连接
-				con = freeConnections.firstElement();
+		synchronized PooledConnection checkout() {
+			PooledConnection pc = null;
+			long now = System.currentTimeMillis();
+			while (freeConnections.size() > 0) {// 获取向量中第一个可用连接
+				pc = freeConnections.firstElement();
 				freeConnections.removeElementAt(0);
-				try {
-					if (con.isClosed()) {
-						LOGGER.info("从连接池" + poolName + "删除一个无效连接");
-						// 递归调用自己,尝试再次获取可用连接
-						con = getConnection();
-					}
-				} catch (SQLException e) {
-					LOGGER.info("从连接池" + poolName + "删除一个无效连接");
-					// 递归调用自己,尝试再次获取可用连接
-					con = getConnection();
+				if (isUsable(pc, now)) {
+					break;
 				}
-			} else if (maxConn == 0 || checkedOut < maxConn) {
-				con = newConnection();
+				LOGGER.info("从连接池" + poolName + "删除一个无效连接");
+				closeConnection(pc);
+				pc = null;
+			}
+			int limit = getLimit();
+			if (pc == null && (limit == 0 || checkedOut + freeConnections.size() + creating < limit)) {
+				pc = newConnection();
 			}
-			if (con != null) {
+			if (pc != null) {
 				checkedOut++;
 			}
-			return con;
+			return pc;
 		}
 
 		/**
-		 * 从连接池获取可用连接.可以指定客户程序能够等待的最长时间 参见前一个getConnection()方法.
+		 * 从连接池获取可用连接.可以指定客户程序能够等待的最长时间 参见前一个checkout()方法.
+		 * 已有 maxWaiters 个线程在等待时立即失败
 		 * 
 		 * @param timeout
 		 *            以毫秒计的等待时间限制
 		 */
-		public synchronized Connection getConnection(long timeout) {
+		synchronized PooledConnection doCheckout(long timeout) throws PoolExhaustedException {
 			long startTime = new Date().getTime();
-			Connection con;
-			while ((con = getConnection()) == null) {
+			PooledConnection pc;
+			while ((pc = checkout()) == null) {
+				long remaining = timeout - (new Date().getTime() - startTime);
+				if (remaining <= 0) {// wait()返回的原因是超时
+					throw timedOut(timeout);
+				}
+				if (config.maxWaiters > 0 && waiting >= config.maxWaiters) {
+					throw rejected(waiting + " threads already waiting");
+				}
 				try {
-					wait(timeout);
+					waiting++;
+					wait(remaining);
 				} catch (InterruptedException e) {
                     LOGGER.info(e.getMessage());
-				}
-				if ((new Date().getTime() - startTime) >= timeout) {// wait()返回的原因是超时
-                    LOGGER.info("获取连接超时");
-					return null;
+				} finally {
+					waiting--;
 				}
 			}
-			return con;
+			return pc;
 		}
 
 		/**
-		 * 关闭所有连接
+		 * 连接数上限提高时唤醒等待的线程
 		 */
-		public synchronized void release() {
-			Enumeration<Connection> allConnections = freeConnections.elements();
-			while (allConnections.hasMoreElements()) {
-				Connection con = allConnections.nextElement();
-				try {
-					con.close();
-                    LOGGER.info("关闭连接池" + poolName + "中的一个连接");
-				} catch (SQLException e) {
-                    LOGGER.info("无法关闭连接池" + poolName + "中的连接" + "\n");
-                    LOGGER.info(e.getMessage());
+		protected synchronized void limitChanged(int oldLimit, int newLimit) {
+			notifyAll();
+		}
+
+		synchronized int getActiveCount() {
+			return checkedOut;
+		}
+
+		int getIdleCount() {
+			return freeConnections.size();
+		}
+
+		synchronized int getWaitingCount() {
+			return waiting;
+		}
+
+		/**
+		 * 关闭过期的空闲连接, 并补足 minIdle 个空闲连接. 新连接在锁外创建.
+		 */
+		void maintain() {
+			List<PooledConnection> evicted = new ArrayList<PooledConnection>();
+			int needed;
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				Iterator<PooledConnection> it = freeConnections.iterator();
+				while (it.hasNext()) {
+					PooledConnection pc = it.next();
+					if (isEvictable(pc, now)) {
+						it.remove();
+						evicted.add(pc);
+					}
+				}
+				// 超过目标大小的空闲连接
+				int limit = getLimit();
+				while (limit > 0 && checkedOut + freeConnections.size() > limit && freeConnections.size() > 0) {
+					evicted.add(freeConnections.remove(freeConnections.size() - 1));
+				}
+				needed = config.minIdle - freeConnections.size();
+				if (limit > 0) {
+					needed = Math.min(needed, limit - checkedOut - freeConnections.size() - creating);
+				}
+				needed = Math.max(needed, 0);
+				creating += needed;
+			}
+			for (PooledConnection pc : evicted) {
+				LOGGER.info("从连接池" + poolName + "关闭一个过期的空闲连接");
+				closeConnection(pc);
+			}
+			for (int i = 0; i < needed; i++) {
+				PooledConnection pc = newConnection();
+				synchronized (this) {
+					creating--;
+					if (pc != null) {
+						freeConnections.addElement(pc);
+						notifyAll();
+					}
 				}
 			}
-			freeConnections.removeAllElements();
 		}
 
 		/**
-		 * 创建新的连接
+		 * 关闭所有连接
 		 */
-		private Connection newConnection() {
-			Connection con;
-			try {
-				if (user == null || "".equals(user)) {
-					con = DriverManager.getConnection(URL);
-				} else {
-					con = DriverManager.getConnection(URL, user, password);
-				}
-				count++;
-				LOGGER.info("create a new connection(" + count + ") from pool : " + poolName);
-			} catch (SQLException e) {
-                LOGGER.info("无法创建下列URL的连接: " + URL);
-                LOGGER.info(e.getMessage());
-				return null;
+		public synchronized void release() {
+			Enumeration<PooledConnection> allConnections = freeConnections.elements();
+			while (allConnections.hasMoreElements()) {
+				closeConnection(allConnections.nextElement());
 			}
-			return con;
+			freeConnections.removeAllElements();
 		}
 	}
 }
\ No newline at end of file
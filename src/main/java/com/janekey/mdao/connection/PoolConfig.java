@@ -0,0 +1,134 @@
+package com.janekey.mdao.connection;
+
+import org.apache.log4j.Logger;
+
+import java.util.Properties;
+
+/**
+ * Settings of one pool, read from the '&lt;pool&gt;.*' properties of database.properties.
+ * All times are in milliseconds.
+ */
+final class PoolConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(PoolConfig.class);
+
+    final String poolName;
+    final String url;
+    final String user;
+    final String password;
+    /** 最大连接数, 0 为不限制 */
+    final int maxConn;
+    /** synchronized or concurrent */
+    final String poolType;
+    /** 保持的最少空闲连接数 */
+    final int minIdle;
+    /** 空闲超过此时间的连接被关闭, 0 为不关闭 */
+    final long idleTimeout;
+    /** 创建超过此时间的连接被关闭, 0 为不限制 */
+    final long maxLifetime;
+    /** 空闲超过此时间的连接在取出时用 isValid 检查, 小于 0 时只检查 isClosed */
+    final long validationIdle;
+    /** isValid 的超时时间, 以秒计 */
+    final int validationTimeout;
+    /** 维护任务的执行间隔, 0 为不执行 */
+    final long maintenanceInterval;
+    /** 每个连接缓存的 PreparedStatement 数, 0 为不缓存 */
+    final int statementCacheSize;
+    /** 流式查询每次读取的行数, MySQL 默认为 Integer.MIN_VALUE 逐行读取 */
+    final int fetchSize;
+    /** 只读副本的连接池名, 读操作路由到这些连接池 */
+    final String[] replicas;
+    /** 副本的选择方式: leastoutstanding or roundrobin */
+    final String balance;
+    /** 作为副本时的权重 */
+    final int weight;
+    /** 连续超时此次数后跳过副本 */
+    final int replicaFailures;
+    /** 跳过副本的时间 */
+    final long replicaCooldown;
+    /** 等待连接的最长时间 */
+    final long checkoutTimeout;
+    /** 最多等待连接的线程数, 超过时立即失败, 0 为不限制 */
+    final int maxWaiters;
+    /** 连续创建连接失败此次数后断路, 0 为不使用断路器 */
+    final int breakerFailures;
+    /** 断路的时间, 之后再次尝试创建连接 */
+    final long breakerCooldown;
+    /** 是否在 adaptiveMin 与 maxConn 之间自动调整连接池大小 */
+    final boolean adaptive;
+    /** 自动调整时的最小连接数 */
+    final int adaptiveMin;
+    /** 自动调整时每次增加的连接数 */
+    final int adaptiveStep;
+    /** 平均等待连接超过此时间时增加连接 */
+    final long targetWait;
+
+    private PoolConfig(String poolName, Properties props) {
+        this.poolName = poolName;
+        this.url = props.getProperty(poolName + ".url");
+        this.user = props.getProperty(poolName + ".user");
+        this.password = props.getProperty(poolName + ".password");
+        String maxconn = props.getProperty(poolName + ".maxconn", "10");
+        int max;
+        try {
+            max = Integer.valueOf(maxconn.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error("error max connection limit: " + maxconn + " . pool: " + poolName);
+            max = 0;
+        }
+        this.maxConn = max;
+        this.poolType = props.getProperty(poolName + ".pooltype", "synchronized").trim();
+        this.minIdle = intValue(props, "minidle", 0);
+        this.idleTimeout = longValue(props, "idletimeout", 600000L);
+        this.maxLifetime = longValue(props, "maxlifetime", 1800000L);
+        this.validationIdle = longValue(props, "validationidle", 5000L);
+        this.validationTimeout = intValue(props, "validationtimeout", 3);
+        this.maintenanceInterval = longValue(props, "maintenanceinterval", 30000L);
+        this.statementCacheSize = intValue(props, "stmtcachesize", 0);
+        this.fetchSize = intValue(props, "fetchsize",
+                url != null && url.startsWith("jdbc:mysql:") ? Integer.MIN_VALUE : 1000);
+        this.replicas = listValue(props, "replicas");
+        this.balance = props.getProperty(poolName + ".balance", "leastoutstanding").trim();
+        this.weight = Math.max(1, intValue(props, "weight", 1));
+        this.replicaFailures = Math.max(1, intValue(props, "replicafailures", 3));
+        this.replicaCooldown = longValue(props, "replicacooldown", 30000L);
+        this.checkoutTimeout = Math.max(0L, longValue(props, "checkouttimeout", 30000L));
+        this.maxWaiters = Math.max(0, intValue(props, "maxwaiters", 0));
+        this.breakerFailures = Math.max(0, intValue(props, "breakerfailures", 0));
+        this.breakerCooldown = longValue(props, "breakercooldown", 10000L);
+        this.adaptive = Boolean.parseBoolean(props.getProperty(poolName + ".adaptive", "false").trim());
+        this.adaptiveMin = intValue(props, "adaptivemin", Math.max(1, minIdle));
+        this.adaptiveStep = Math.max(1, intValue(props, "adaptivestep", 2));
+        this.targetWait = longValue(props, "targetwait", 10L);
+    }
+
+    static PoolConfig load(String poolName, Properties props) {
+        return new PoolConfig(poolName, props);
+    }
+
+    private String[] listValue(Properties props, String key) {
+        String value = props.getProperty(poolName + "." + key);
+        if (value == null || value.trim().length() == 0) {
+            return new String[0];
+        }
+        return value.trim().split("\\s*,\\s*");
+    }
+
+    private int intValue(Properties props, String key, int defaultValue) {
+        return (int) longValue(props, key, defaultValue);
+    }
+
+    private long longValue(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(poolName + "." + key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error("error " + key + " : " + value + " . pool: " + poolName);
+            return defaultValue;
+        }
+    }
+
+}
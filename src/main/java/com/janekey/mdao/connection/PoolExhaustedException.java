@@ -0,0 +1,27 @@
+package com.janekey.mdao.connection;
+
+import java.sql.SQLException;
+
+/**
+ * No connection of the pool could be checked out: the '&lt;pool&gt;.checkouttimeout' passed, the
+ * '&lt;pool&gt;.maxwaiters' threads were already waiting, or the circuit breaker is open because
+ * the database keeps failing to create connections.
+ * The BaseDao methods do not return an empty result or 0 for it, they throw it wrapped in an
+ * {@link UncheckedPoolExhaustedException}.
+ */
+public class PoolExhaustedException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String poolName;
+
+    public PoolExhaustedException(String poolName, String reason) {
+        super("pool " + poolName + " exhausted: " + reason);
+        this.poolName = poolName;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+}
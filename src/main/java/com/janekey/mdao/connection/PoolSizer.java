@@ -0,0 +1,143 @@
+package com.janekey.mdao.connection;
+
+import com.janekey.mdao.metrics.Metrics;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AIMD controller of the size of a pool with '&lt;pool&gt;.adaptive = true', run by the pool maintenance.
+ * Between two runs it measures the checkout waits, the failed checkouts and how long connections are
+ * held. By Little's law the connections in use on average are the total hold time divided by the
+ * interval. The target size then
+ * <ul>
+ * <li>grows by '&lt;pool&gt;.adaptivestep' when checkouts waited longer than '&lt;pool&gt;.targetwait'
+ * on average or failed,</li>
+ * <li>shrinks by a quarter when checkouts wait while connections are held more than twice as long
+ * as usual, as more connections would only load the database more,</li>
+ * <li>shrinks by a quarter, not below twice the connections in use, when less than half is used,</li>
+ * </ul>
+ * always between '&lt;pool&gt;.adaptivemin' and '&lt;pool&gt;.maxconn'.
+ */
+final class PoolSizer {
+
+    private static final Logger LOGGER = Logger.getLogger(PoolSizer.class);
+
+    private final String poolName;
+    private final int min;
+    private final int max;
+    private final int step;
+    private final long targetWaitNanos;
+
+    private volatile int target;
+    private final AtomicLong resizes = new AtomicLong();
+
+    // 本次统计区间内的测量值
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong holds = new AtomicLong();
+    private final AtomicLong holdNanos = new AtomicLong();
+    private long windowStart = System.nanoTime();
+
+    // 通常的连接占用时间, 缓慢上升
+    private double baselineHold;
+
+    private PoolSizer(PoolConfig config, int min) {
+        this.poolName = config.poolName;
+        this.min = min;
+        this.max = config.maxConn;
+        this.step = config.adaptiveStep;
+        this.targetWaitNanos = config.targetWait * 1000000L;
+        this.target = min;
+    }
+
+    /**
+     * @return the controller, or null if the pool is not adaptive or has no maxconn
+     */
+    static PoolSizer create(PoolConfig config) {
+        if (!config.adaptive) {
+            return null;
+        }
+        if (config.maxConn <= 0 || config.maintenanceInterval <= 0) {
+            LOGGER.error("adaptive pool " + config.poolName + " needs maxconn and maintenanceinterval above 0");
+            return null;
+        }
+        int min = Math.min(config.maxConn, Math.max(1, config.adaptiveMin));
+        return new PoolSizer(config, min);
+    }
+
+    int getTarget() {
+        return target;
+    }
+
+    long getResizes() {
+        return resizes.get();
+    }
+
+    void checkedOut(long wait) {
+        checkouts.incrementAndGet();
+        waitNanos.addAndGet(wait);
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+    }
+
+    void checkedIn(long hold) {
+        holds.incrementAndGet();
+        holdNanos.addAndGet(hold);
+    }
+
+    /**
+     * Decide the target size from the measurements since the last call and start a new interval.
+     *
+     * @return the new target size
+     */
+    synchronized int resize() {
+        long now = System.nanoTime();
+        long window = Math.max(1, now - windowStart);
+        windowStart = now;
+        long n = checkouts.getAndSet(0);
+        long wait = waitNanos.getAndSet(0);
+        long failed = failures.getAndSet(0);
+        long held = holds.getAndSet(0);
+        long hold = holdNanos.getAndSet(0);
+
+        double inUse = (double) hold / window;
+        double meanWait = n == 0 ? 0 : (double) wait / n;
+        double meanHold = held == 0 ? 0 : (double) hold / held;
+        boolean slow = false;
+        if (meanHold > 0) {
+            slow = baselineHold > 0 && meanHold > baselineHold * 2;
+            baselineHold = baselineHold == 0 ? meanHold : Math.min(meanHold, baselineHold * 1.1);
+        }
+
+        int current = target;
+        int next = current;
+        String reason = null;
+        if (failed > 0 || meanWait > targetWaitNanos) {
+            if (slow) {
+                next = Math.max(min, current * 3 / 4);
+                reason = String.format("hold time %.1f ms over twice the usual %.1f ms",
+                        meanHold / 1e6, baselineHold / 1e6);
+            } else {
+                next = Math.min(max, current + step);
+                reason = String.format("mean wait %.1f ms, %d failed checkouts", meanWait / 1e6, failed);
+            }
+        } else if (inUse * 2 < current) {
+            next = Math.max(min, Math.max((int) Math.ceil(inUse * 2), current * 3 / 4));
+            reason = String.format("%.1f connections in use", inUse);
+        }
+        if (next != current) {
+            target = next;
+            resizes.incrementAndGet();
+            LOGGER.info("pool " + poolName + " size " + current + " -> " + next + ": " + reason);
+            if (Metrics.isEnabled()) {
+                Metrics.poolResized(poolName, current, next, reason);
+            }
+        }
+        return next;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.janekey.mdao.connection;
+
+import com.janekey.mdao.metrics.Histogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saturation, checkout wait and connection creation statistics of one pool,
+ * registered as the MBean 'com.janekey.mdao:type=Pool,name=&lt;pool&gt;'.
+ */
+public final class PoolStats implements PoolStatsMBean {
+
+    private final ConnectionPool pool;
+    private final Histogram waitTime = new Histogram();
+    private final Histogram createTime = new Histogram();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    PoolStats(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    void checkedOut(long waitNanos) {
+        waitTime.record(waitNanos);
+    }
+
+    void timeout() {
+        timeouts.incrementAndGet();
+    }
+
+    void rejected() {
+        rejections.incrementAndGet();
+    }
+
+    void created(long createNanos) {
+        createTime.record(createNanos);
+    }
+
+    public Histogram getWaitTime() {
+        return waitTime;
+    }
+
+    public Histogram getCreateTime() {
+        return createTime;
+    }
+
+    public String getPoolName() {
+        return pool.getPoolName();
+    }
+
+    public int getActiveConnections() {
+        return pool.getActiveCount();
+    }
+
+    public int getIdleConnections() {
+        return pool.getIdleCount();
+    }
+
+    public int getWaitingThreads() {
+        return pool.getWaitingCount();
+    }
+
+    public int getTotalConnections() {
+        return pool.getSize();
+    }
+
+    public int getMaxConnections() {
+        return pool.maxConn;
+    }
+
+    public int getTargetConnections() {
+        return pool.getLimit();
+    }
+
+    public long getResizes() {
+        return pool.getResizes();
+    }
+
+    public long getCheckouts() {
+        return waitTime.getCount();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public boolean isCircuitOpen() {
+        return pool.isCircuitOpen();
+    }
+
+    public double getWaitMeanMicros() {
+        return waitTime.getMean() / 1000;
+    }
+
+    public long getWaitP50Micros() {
+        return waitTime.getPercentile(50) / 1000;
+    }
+
+    public long getWaitP99Micros() {
+        return waitTime.getPercentile(99) / 1000;
+    }
+
+    public long getWaitMaxMicros() {
+        return waitTime.getMax() / 1000;
+    }
+
+    public long getConnectionsCreated() {
+        return createTime.getCount();
+    }
+
+    public double getCreateMeanMicros() {
+        return createTime.getMean() / 1000;
+    }
+
+    public long getCreateMaxMicros() {
+        return createTime.getMax() / 1000;
+    }
+
+}
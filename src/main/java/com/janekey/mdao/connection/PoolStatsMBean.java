@@ -0,0 +1,53 @@
+package com.janekey.mdao.connection;
+
+/**
+ * JMX view of a connection pool, times in microseconds.
+ * Gauges are always current, counters and times only move while metrics are enabled.
+ */
+public interface PoolStatsMBean {
+
+    String getPoolName();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getWaitingThreads();
+
+    int getTotalConnections();
+
+    int getMaxConnections();
+
+    /**
+     * The current size limit, set by the adaptive sizing between adaptivemin and maxconn.
+     */
+    int getTargetConnections();
+
+    long getResizes();
+
+    long getCheckouts();
+
+    long getTimeouts();
+
+    /**
+     * Checkouts failed at once because of '&lt;pool&gt;.maxwaiters' or the circuit breaker.
+     */
+    long getRejections();
+
+    boolean isCircuitOpen();
+
+    double getWaitMeanMicros();
+
+    long getWaitP50Micros();
+
+    long getWaitP99Micros();
+
+    long getWaitMaxMicros();
+
+    long getConnectionsCreated();
+
+    double getCreateMeanMicros();
+
+    long getCreateMaxMicros();
+
+}
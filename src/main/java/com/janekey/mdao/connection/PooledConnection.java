@@ -0,0 +1,83 @@
+package com.janekey.mdao.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by a pool, with the times the pool maintenance needs.
+ */
+final class PooledConnection {
+
+    private final Connection connection;
+    private final StatementCache statementCache;
+    private final long createTime;
+    private volatile long lastUseTime;
+    // 取出时的System.nanoTime(), 只在自动调整连接池大小时记录
+    private volatile long checkoutNanos;
+
+    /**
+     * @param statementCache 语句缓存, 或 null
+     */
+    PooledConnection(Connection connection, StatementCache statementCache) {
+        this.connection = connection;
+        this.statementCache = statementCache;
+        this.createTime = System.currentTimeMillis();
+        this.lastUseTime = createTime;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Prepare a statement, from the statement cache when the pool has one.
+     *
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS, Statement.NO_GENERATED_KEYS or -1 for prepareStatement(sql)
+     */
+    PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        if (statementCache != null) {
+            return statementCache.prepare(sql, autoGeneratedKeys);
+        }
+        return autoGeneratedKeys < 0 ? connection.prepareStatement(sql)
+                : connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    /**
+     * Give back a statement of {@link #prepareStatement(String, int)}, it is closed when not cached.
+     */
+    void releaseStatement(PreparedStatement stmt) throws SQLException {
+        if (statementCache != null) {
+            statementCache.release(stmt);
+        } else {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Mark the connection as just used, called when it is returned to the pool.
+     */
+    void touch() {
+        lastUseTime = System.currentTimeMillis();
+    }
+
+    void checkedOut(long nanoTime) {
+        checkoutNanos = nanoTime;
+    }
+
+    /**
+     * @return nanoseconds since {@link #checkedOut(long)}
+     */
+    long holdTime(long nanoTime) {
+        return nanoTime - checkoutNanos;
+    }
+
+    long idleTime(long now) {
+        return now - lastUseTime;
+    }
+
+    long age(long now) {
+        return now - createTime;
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.janekey.mdao.connection;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The read replicas of a primary pool, declared with '&lt;pool&gt;.replicas = r1,r2'.
+ * A read goes to the replica with the fewest outstanding requests (checked out plus waiting,
+ * divided by '&lt;replica&gt;.weight'), or with '&lt;pool&gt;.balance = roundrobin' to the replicas
+ * in turn by weight. A replica whose checkout times out '&lt;pool&gt;.replicafailures' times in a row
+ * is skipped for '&lt;pool&gt;.replicacooldown' milliseconds, then tried again; reads go to the
+ * primary while no replica is available.
+ */
+final class ReplicaSet {
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicaSet.class);
+
+    private final ConnectionPool primary;
+    private final Replica[] replicas;
+    private final boolean roundRobin;
+    private final int maxFailures;
+    private final long cooldown;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaSet(ConnectionPool primary, ConnectionPool[] pools) {
+        PoolConfig config = primary.getConfig();
+        this.primary = primary;
+        this.replicas = new Replica[pools.length];
+        for (int i = 0; i < pools.length; i++) {
+            replicas[i] = new Replica(pools[i]);
+        }
+        this.roundRobin = "roundrobin".equalsIgnoreCase(config.balance);
+        this.maxFailures = config.replicaFailures;
+        this.cooldown = config.replicaCooldown;
+    }
+
+    /**
+     * @return the name of the pool for the next read
+     */
+    String choose() {
+        long now = System.currentTimeMillis();
+        Replica chosen = roundRobin ? nextByWeight(now) : leastOutstanding(now);
+        return chosen == null ? primary.getPoolName() : chosen.pool.getPoolName();
+    }
+
+    /**
+     * @return the replica of this set with the pool name, or null
+     */
+    Replica get(String poolName) {
+        for (Replica replica : replicas) {
+            if (replica.pool.getPoolName().equals(poolName)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica leastOutstanding(long now) {
+        // 从轮转的位置开始比较, 负载相同时分散到各个副本
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % replicas.length;
+        Replica best = null;
+        double bestLoad = 0;
+        for (int i = 0; i < replicas.length; i++) {
+            Replica replica = replicas[(start + i) % replicas.length];
+            if (!replica.isAvailable(now)) {
+                continue;
+            }
+            ConnectionPool pool = replica.pool;
+            double load = (double) (pool.getActiveCount() + pool.getWaitingCount()) / replica.weight;
+            if (best == null || load < bestLoad) {
+                best = replica;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Smooth weighted round robin: each replica gains its weight, the one with the most is chosen
+     * and gives back the total weight.
+     */
+    private synchronized Replica nextByWeight(long now) {
+        Replica best = null;
+        int total = 0;
+        for (Replica replica : replicas) {
+            if (!replica.isAvailable(now)) {
+                continue;
+            }
+            replica.current += replica.weight;
+            total += replica.weight;
+            if (best == null || replica.current > best.current) {
+                best = replica;
+            }
+        }
+        if (best != null) {
+            best.current -= total;
+        }
+        return best;
+    }
+
+    final class Replica {
+        final ConnectionPool pool;
+        final int weight;
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long downUntil;
+        // 仅由 nextByWeight 在锁内使用
+        private int current;
+
+        Replica(ConnectionPool pool) {
+            this.pool = pool;
+            this.weight = pool.getConfig().weight;
+        }
+
+        boolean isAvailable(long now) {
+            return now >= downUntil;
+        }
+
+        /**
+         * A connection was checked out, the replica is healthy again.
+         */
+        void succeeded() {
+            if (failures.getAndSet(0) >= maxFailures) {
+                downUntil = 0;
+                LOGGER.info("副本" + pool.getPoolName() + "已恢复, 重新接受读请求");
+            }
+        }
+
+        /**
+         * The checkout timed out, skip the replica after maxFailures timeouts in a row.
+         * After the cooldown one more timeout is enough to skip it again.
+         */
+        void failed() {
+            if (failures.incrementAndGet() >= maxFailures) {
+                downUntil = System.currentTimeMillis() + cooldown;
+                LOGGER.warn("副本" + pool.getPoolName() + "连续" + failures.get() + "次获取连接超时, "
+                        + cooldown + "ms内不再使用");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.janekey.mdao.connection;
+
+import org.apache.log4j.Logger;
+
+import java.util.Properties;
+
+/**
+ * The pools holding the rows of a sharded table, read from the 'shard.&lt;table&gt;.*' properties:
+ * <pre>
+ * shard.tb_user.pools = s0,s1,s2
+ * shard.tb_user.key = user_id
+ * shard.tb_user.rule = hash
+ * # rule = range: keys below 1000000 on s0, below 2000000 on s1, the others on s2
+ * shard.tb_user.ranges = 1000000,2000000
+ * </pre>
+ * The hash rule puts an integer key on pool key mod n, other keys by their hashCode.
+ */
+public final class ShardRule {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardRule.class);
+
+    private final String table;
+    private final String keyColumn;
+    private final String[] pools;
+    private final boolean range;
+    private final long[] bounds;
+
+    private ShardRule(String table, String keyColumn, String[] pools, boolean range, long[] bounds) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.pools = pools;
+        this.range = range;
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return the rule, or null if it is not valid
+     */
+    static ShardRule load(String table, Properties props) {
+        String prefix = "shard." + table + ".";
+        String[] pools = props.getProperty(prefix + "pools", "").trim().split("\\s*,\\s*");
+        String keyColumn = props.getProperty(prefix + "key", "id").trim();
+        boolean range = "range".equalsIgnoreCase(props.getProperty(prefix + "rule", "hash").trim());
+        long[] bounds = new long[0];
+        if (pools.length == 0 || pools[0].length() == 0) {
+            LOGGER.error("No pools for the sharded table : " + table);
+            return null;
+        }
+        if (range) {
+            String[] values = props.getProperty(prefix + "ranges", "").trim().split("\\s*,\\s*");
+            if (values.length != pools.length - 1) {
+                LOGGER.error("shard." + table + ".ranges needs " + (pools.length - 1) + " bounds");
+                return null;
+            }
+            bounds = new long[values.length];
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    bounds[i] = Long.parseLong(values[i]);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.error("error shard." + table + ".ranges : " + e.getMessage());
+                return null;
+            }
+        }
+        return new ShardRule(table.toLowerCase(), keyColumn, pools, range, bounds);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the column whose value chooses the shard
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * @return the pools of all shards
+     */
+    public String[] getPools() {
+        return pools.clone();
+    }
+
+    /**
+     * @return the pool of the shard holding the key
+     */
+    public String getPool(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException("null shard key of table " + table);
+        }
+        if (range) {
+            long value = key instanceof Number ? ((Number) key).longValue() : Long.parseLong(key.toString());
+            for (int i = 0; i < bounds.length; i++) {
+                if (value < bounds[i]) {
+                    return pools[i];
+                }
+            }
+            return pools[pools.length - 1];
+        }
+        long hash;
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+            hash = ((Number) key).longValue();
+        } else {
+            hash = key.hashCode();
+        }
+        return pools[(int) ((hash % pools.length + pools.length) % pools.length)];
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.janekey.mdao.connection;
+
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of the prepared statements of one physical connection, keyed by SQL text and
+ * the autoGeneratedKeys flag. A statement is handed out to one user at a time; when the same
+ * SQL is prepared again before the statement is released, an uncached statement is used.
+ * Size it with '&lt;pool&gt;.stmtcachesize'.
+ */
+final class StatementCache {
+
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class);
+
+    private final Connection conn;
+    private final int maxSize;
+    private final StatementCacheStats stats;
+    private final LinkedHashMap<Key, Entry> entries;
+    private final Map<PreparedStatement, Entry> inUse = new IdentityHashMap<PreparedStatement, Entry>();
+
+    StatementCache(Connection conn, int maxSize, StatementCacheStats stats) {
+        this.conn = conn;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key, StatementCache.Entry> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS, Statement.NO_GENERATED_KEYS or -1 for prepareStatement(sql)
+     */
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse) {
+            stats.hit();
+        } else {
+            stats.miss();
+            PreparedStatement stmt = autoGeneratedKeys < 0 ? conn.prepareStatement(sql)
+                    : conn.prepareStatement(sql, autoGeneratedKeys);
+            if (entry != null) {
+                // 同一SQL的语句正在使用, 不缓存
+                Entry uncached = new Entry(stmt);
+                uncached.evicted = true;
+                uncached.inUse = true;
+                inUse.put(stmt, uncached);
+                return stmt;
+            }
+            entry = new Entry(stmt);
+            entries.put(key, entry);
+        }
+        entry.inUse = true;
+        inUse.put(entry.stmt, entry);
+        return entry.stmt;
+    }
+
+    /**
+     * Reset a statement returned by {@link #prepare(String, int)} and keep it for the next user,
+     * a statement which is evicted or could not be reset is closed.
+     */
+    synchronized void release(PreparedStatement stmt) {
+        Entry entry = inUse.remove(stmt);
+        if (entry == null) {
+            close(stmt);
+            return;
+        }
+        entry.inUse = false;
+        if (entry.evicted) {
+            close(stmt);
+            return;
+        }
+        try {
+            stmt.clearParameters();
+            stmt.clearBatch();
+            stmt.clearWarnings();
+        } catch (SQLException e) {
+            LOGGER.info(e.getMessage());
+            entries.values().remove(entry);
+            close(stmt);
+        }
+    }
+
+    private void evict(Entry entry) {
+        stats.evict();
+        entry.evicted = true;
+        if (!entry.inUse) {
+            close(entry.stmt);
+        }
+    }
+
+    private static void close(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            LOGGER.info(e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        final PreparedStatement stmt;
+        boolean inUse;
+        boolean evicted;
+
+        Entry(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+    }
+
+    private static final class Key {
+        final String sql;
+        final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+        }
+
+        public int hashCode() {
+            return sql.hashCode() * 31 + autoGeneratedKeys;
+        }
+    }
+
+}
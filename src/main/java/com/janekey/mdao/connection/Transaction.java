@@ -0,0 +1,218 @@
+package com.janekey.mdao.connection;
+
+import com.janekey.mdao.metrics.Metrics;
+import org.apache.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A transaction bound to the current thread. Every DBConnection of the same pool created by the
+ * thread until {@link #end()} uses the connection of the transaction: its free() neither commits
+ * nor returns the connection, its commit() does nothing and its rollback() marks the transaction
+ * rollback only, like a failed statement does.
+ * With batchWrites, updates given to {@link #addWrite(String, Object[])} are kept and executed as
+ * JDBC batches before the next other statement and at commit.
+ */
+public final class Transaction {
+
+    private static final Logger LOGGER = Logger.getLogger(Transaction.class);
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<Transaction>();
+
+    private final String poolName;
+    private final PooledConnection pooledConn;
+    private final boolean autoCommit;
+    private final boolean batchWrites;
+    private boolean rollbackOnly;
+    private boolean committed;
+    private final List<String> pendingSql = new ArrayList<String>();
+    private final List<Object[]> pendingParams = new ArrayList<Object[]>();
+    private final List<Runnable> afterCompletion = new ArrayList<Runnable>();
+
+    private Transaction(String poolName, PooledConnection pooledConn, boolean autoCommit, boolean batchWrites) {
+        this.poolName = poolName;
+        this.pooledConn = pooledConn;
+        this.autoCommit = autoCommit;
+        this.batchWrites = batchWrites;
+    }
+
+    /**
+     * @return the transaction of the current thread, or null
+     */
+    public static Transaction current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Check out a connection of the pool, turn off its auto commit and bind it to the current thread.
+     *
+     * @param batchWrites 是否将更新缓存为批处理
+     */
+    public static Transaction begin(String poolName, boolean batchWrites) throws SQLException {
+        if (CURRENT.get() != null) {
+            throw new SQLException("a transaction of pool " + CURRENT.get().poolName + " is already active");
+        }
+        DBConnectionManager connMgr = DBConnectionManager.getInstance();
+        PooledConnection pc = connMgr.checkout(poolName);
+        boolean autoCommit;
+        try {
+            autoCommit = pc.getConnection().getAutoCommit();
+            pc.getConnection().setAutoCommit(false);
+        } catch (SQLException e) {
+            connMgr.checkin(poolName, pc);
+            throw e;
+        }
+        Transaction tx = new Transaction(poolName, pc, autoCommit, batchWrites);
+        CURRENT.set(tx);
+        return tx;
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    public boolean isBatchWrites() {
+        return batchWrites;
+    }
+
+    /**
+     * @return whether {@link #commit()} succeeded, for the {@link #afterCompletion(Runnable)} tasks
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    /**
+     * Roll the transaction back at its end instead of committing it.
+     */
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    /**
+     * Keep an update until the next statement or the commit.
+     */
+    public void addWrite(String sql, Object[] params) {
+        pendingSql.add(sql);
+        pendingParams.add(params == null ? new Object[0] : params.clone());
+    }
+
+    /**
+     * Run the task after the transaction is committed or rolled back.
+     */
+    public void afterCompletion(Runnable task) {
+        afterCompletion.add(task);
+    }
+
+    PooledConnection getPooledConnection() {
+        return pooledConn;
+    }
+
+    /**
+     * Execute the kept updates, runs of the same SQL as one batch.
+     */
+    void flush() throws SQLException {
+        int from = 0;
+        try {
+            while (from < pendingSql.size()) {
+                String sql = pendingSql.get(from);
+                int to = from + 1;
+                while (to < pendingSql.size() && sql.equals(pendingSql.get(to))) {
+                    to++;
+                }
+                executeBatch(sql, pendingParams.subList(from, to));
+                from = to;
+            }
+        } catch (SQLException e) {
+            rollbackOnly = true;
+            throw e;
+        } finally {
+            pendingSql.clear();
+            pendingParams.clear();
+        }
+    }
+
+    private void executeBatch(String sql, List<Object[]> rows) throws SQLException {
+        long start = System.nanoTime();
+        PreparedStatement stmt = pooledConn.prepareStatement(sql, -1);
+        try {
+            for (Object[] params : rows) {
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            if (Metrics.isEnabled()) {
+                int total = 0;
+                for (int count : counts) {
+                    total += Math.max(count, 0);
+                }
+                Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, total, false);
+            }
+        } catch (SQLException e) {
+            if (Metrics.isEnabled()) {
+                Metrics.statementExecuted(poolName, sql, System.nanoTime() - start, -1, true);
+            }
+            throw e;
+        } finally {
+            pooledConn.releaseStatement(stmt);
+        }
+    }
+
+    /**
+     * Execute the kept updates and commit, or roll back when the transaction is rollback only.
+     *
+     * @throws SQLException when an update fails or the transaction was rolled back
+     */
+    public void commit() throws SQLException {
+        flush();
+        if (rollbackOnly) {
+            rollback();
+            throw new SQLException("transaction of pool " + poolName + " rolled back after a failed statement");
+        }
+        pooledConn.getConnection().commit();
+        committed = true;
+    }
+
+    public void rollback() {
+        pendingSql.clear();
+        pendingParams.clear();
+        try {
+            pooledConn.getConnection().rollback();
+        } catch (SQLException e) {
+            LOGGER.info(e.getMessage());
+        }
+    }
+
+    /**
+     * Restore the auto commit of the connection, return it to the pool, unbind the transaction and
+     * run the {@link #afterCompletion(Runnable)} tasks. Call it after commit or rollback.
+     */
+    public void end() {
+        Connection conn = pooledConn.getConnection();
+        try {
+            conn.setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            LOGGER.info(e.getMessage());
+        }
+        CURRENT.remove();
+        DBConnectionManager.getInstance().checkin(poolName, pooledConn);
+        for (Runnable task : afterCompletion) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.janekey.mdao.connection;
+
+/**
+ * A {@link PoolExhaustedException} thrown by the BaseDao methods, which do not declare SQLException.
+ * The daos log and swallow other SQL errors, but a caller must be able to tell an exhausted pool
+ * from an empty result and back off.
+ */
+public class UncheckedPoolExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedPoolExhaustedException(PoolExhaustedException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public PoolExhaustedException getCause() {
+        return (PoolExhaustedException) super.getCause();
+    }
+
+    public String getPoolName() {
+        return getCause().getPoolName();
+    }
+
+}
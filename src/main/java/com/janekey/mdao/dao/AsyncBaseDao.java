@@ -0,0 +1,156 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.connection.Transaction;
+import org.apache.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BaseDao with operations returning {@link CompletableFuture}, so independent queries can run at
+ * the same time. The operations run on the executor of the dao, by default one virtual thread
+ * per operation on Java 21 and later and a cached thread pool before.
+ * Reads wait for the read pool chosen when they are submitted and then run on it, writes for the
+ * write pool. At most as many operations as a pool may have connections run on it at a time, the
+ * others wait in a queue for a connection to become free. Errors are handled like the blocking methods.
+ * The operations run on other threads, outside the transaction of the calling thread: submitting
+ * one inside inTransaction throws IllegalStateException, use the blocking methods there.
+ */
+public class AsyncBaseDao extends BaseDao {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncBaseDao.class);
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+
+    public AsyncBaseDao() {
+        this(getDefaultExecutor());
+    }
+
+    /**
+     * @param executor 执行异步操作的线程池
+     */
+    public AsyncBaseDao(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return the shared executor of the daos created without one
+     */
+    public static ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            synchronized (AsyncBaseDao.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = newDefaultExecutor();
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() when the JVM has it, found by reflection as the
+     * library is built for Java 8.
+     */
+    private static ExecutorService newDefaultExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOGGER.info("async dao runs on virtual threads");
+            return executor;
+        } catch (Exception e) {
+            LOGGER.info("async dao runs on a cached thread pool");
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "mdao-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    protected ExecutorService getExecutor() {
+        return executor;
+    }
+
+    protected CompletableFuture<Integer> executeUpdateAsync(String sql, Object ... object) {
+        return submit(() -> executeUpdate(sql, object));
+    }
+
+    protected CompletableFuture<List<Map<String, Object>>> executeQueryAsync(String sql, Object ... object) {
+        return submitRead(() -> executeQuery(sql, object));
+    }
+
+    protected CompletableFuture<Integer> selectCountAsync(String sql, Object ... object) {
+        return submitRead(() -> selectCount(sql, object));
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> CompletableFuture<List<T>> selectListAsync(String sql, Class<T> cl, Object ... object) {
+        return submitRead(() -> (List<T>) selectList(sql, cl, object));
+    }
+
+    protected <T> CompletableFuture<T> findByIdAsync(Class<T> cl, Object id) {
+        return submitRead(() -> findById(cl, id));
+    }
+
+    /**
+     * @return 插入后的ID
+     */
+    protected CompletableFuture<Integer> executeInsertAsync(String sql, Object ... object) {
+        return submit(() -> executeInsert(sql, object));
+    }
+
+    /**
+     * @return 插入后的ID
+     */
+    protected CompletableFuture<Integer> executeInsertAsync(Object object) {
+        return submit(() -> executeInsert(object));
+    }
+
+    protected CompletableFuture<Integer> updateObjectAsync(Object object) {
+        return submit(() -> updateObject(object));
+    }
+
+    /**
+     * Run an operation of this dao on the executor, after a slot of the write pool is free.
+     * @throws IllegalStateException inside a transaction
+     */
+    protected <T> CompletableFuture<T> submit(Supplier<T> work) {
+        checkTransaction();
+        return AsyncDispatcher.forPool(getWritePool()).submit(executor, work);
+    }
+
+    /**
+     * Run a read of this dao on the executor, after a slot of the read pool is free. The reads of
+     * the operation go to that read pool.
+     * @throws IllegalStateException inside a transaction
+     */
+    protected <T> CompletableFuture<T> submitRead(Supplier<T> work) {
+        checkTransaction();
+        String writePool = getWritePool();
+        String readPool = getReadPool();
+        return AsyncDispatcher.forPool(readPool).submit(executor, onReadPool(writePool, readPool, work));
+    }
+
+    /**
+     * 异步操作在其它线程执行, 不属于当前线程的事务, 既不能读到事务中的写入, 也不随事务回滚
+     */
+    private static void checkTransaction() {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            throw new IllegalStateException("async operation inside a transaction of pool " + tx.getPoolName()
+                    + " would run outside it, use the blocking method");
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.connection.DBConnectionManager;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operations of {@link AsyncBaseDao} on one pool, at most as many at a time as the
+ * pool may have connections now: its maxconn, or the current target size of an adaptive pool. The other operations wait in a queue instead of in the pool, so
+ * thousands of futures do not occupy thousands of threads.
+ * An operation must not wait for work it dispatches itself, when all slots are taken that work
+ * never starts. Check {@link #inSlot()} and run such work on the current thread instead.
+ */
+final class AsyncDispatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncDispatcher.class);
+
+    private static final ConcurrentHashMap<String, AsyncDispatcher> DISPATCHERS =
+            new ConcurrentHashMap<String, AsyncDispatcher>();
+
+    // 正在执行某个连接池的操作的线程
+    private static final ThreadLocal<Boolean> IN_SLOT = new ThreadLocal<Boolean>();
+
+    private final String poolName;
+    private final ConcurrentLinkedQueue<Task> queue = new ConcurrentLinkedQueue<Task>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    private AsyncDispatcher(String poolName) {
+        this.poolName = poolName;
+    }
+
+    /**
+     * @param poolName 操作实际使用的连接池
+     */
+    static AsyncDispatcher forPool(String poolName) {
+        AsyncDispatcher dispatcher = DISPATCHERS.get(poolName);
+        if (dispatcher == null) {
+            AsyncDispatcher created = new AsyncDispatcher(poolName);
+            dispatcher = DISPATCHERS.putIfAbsent(poolName, created);
+            if (dispatcher == null) {
+                dispatcher = created;
+            }
+        }
+        return dispatcher;
+    }
+
+    /**
+     * @return true on a thread running an operation of a dispatcher
+     */
+    static boolean inSlot() {
+        return IN_SLOT.get() != null;
+    }
+
+    <T> CompletableFuture<T> submit(Executor executor, Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        queue.offer(new Task(executor, () -> {
+            try {
+                future.complete(work.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, future));
+        drain();
+        return future;
+    }
+
+    /**
+     * @return the number of operations waiting for a free slot
+     */
+    int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of operations which may run at a time, read from the pool every time
+     */
+    private int limit() {
+        int limit = DBConnectionManager.getInstance().getConnectionLimit(poolName);
+        return limit > 0 ? limit : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Start queued operations while there are free slots.
+     */
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int n = running.get();
+            if (n >= limit()) {
+                return;
+            }
+            if (!running.compareAndSet(n, n + 1)) {
+                continue;
+            }
+            Task task = queue.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                task.executor.execute(() -> {
+                    IN_SLOT.set(Boolean.TRUE);
+                    try {
+                        task.work.run();
+                    } finally {
+                        IN_SLOT.remove();
+                        running.decrementAndGet();
+                        drain();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOGGER.error(e.getMessage());
+                running.decrementAndGet();
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Task {
+        final Executor executor;
+        final Runnable work;
+        final CompletableFuture<?> future;
+
+        Task(Executor executor, Runnable work, CompletableFuture<?> future) {
+            this.executor = executor;
+            this.work = work;
+            this.future = future;
+        }
+    }
+
+}
@@ -1,41 +1,222 @@
 package com.janekey.mdao.dao;
 
 import com.janekey.mdao.annotation.AnnotaionParseException;
-import com.janekey.mdao.annotation.Column;
-import com.janekey.mdao.annotation.Table;
 import com.janekey.mdao.connection.DBConnection;
+import com.janekey.mdao.connection.DBConnectionManager;
+import com.janekey.mdao.connection.PoolExhaustedException;
+import com.janekey.mdao.connection.Transaction;
+import com.janekey.mdao.connection.UncheckedPoolExhaustedException;
+import com.janekey.mdao.result.ColumnarResult;
 import org.apache.log4j.Logger;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class BaseDao {
 	
 	private static Logger LOGGER = Logger.getLogger(BaseDao.class);
 	
 	public static final String DB = "db";
+
+    // MySQL 一条语句最多65535个参数
+    private static final int MAX_PARAMS = 65535;
+
+    private int batchSize = 500;
+    private boolean multiRowInsert = false;
+    private int fetchSize = 0;
+    private volatile InsertCoalescer insertCoalescer;
+    private boolean singleFlight = false;
+    private int idChunkSize = 100;
+    private boolean parallelIdChunks = false;
+
+    // 当前线程的读操作使用写连接池, 用于填充缓存: 副本可能还没有刚提交的写入
+    private static final ThreadLocal<Boolean> READ_PRIMARY = new ThreadLocal<Boolean>();
+
+    // 当前线程的异步读操作排队时选定的读连接池: {写连接池, 读连接池}
+    private static final ThreadLocal<String[]> READ_POOL = new ThreadLocal<String[]>();
+
+    /**
+     * 写操作使用的连接池, 也用于必须读到刚写入数据的查询. 子类可以覆盖以使用其它数据源.
+     */
+    protected String getWritePool() {
+        return DB;
+    }
+
+    /**
+     * 读操作使用的连接池. 写连接池配置了 '&lt;pool&gt;.replicas' 时为其中一个可用的副本,
+     * 否则为写连接池本身. 需要读到刚写入的数据时覆盖为 {@link #getWritePool()}.
+     * 填充实体缓存和查询缓存的读取总是使用写连接池.
+     */
+    protected String getReadPool() {
+        Transaction tx = Transaction.current();
+        if ((tx != null && tx.getPoolName().equals(getWritePool())) || READ_PRIMARY.get() != null) {
+            return getWritePool();
+        }
+        String writePool = getWritePool();
+        String[] chosen = READ_POOL.get();
+        if (chosen != null && chosen[0].equals(writePool)) {
+            return chosen[1];
+        }
+        return DBConnectionManager.getInstance().getReadPool(writePool);
+    }
+
+    /**
+     * 在一个事务中执行work, 不缓存更新
+     * @see #inTransaction(boolean, TransactionWork)
+     */
+    protected <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        return inTransaction(false, work);
+    }
+
+    /**
+     * 在一个事务中执行work. work中所有dao对写连接池的操作, 包括读操作, 使用同一个连接.
+     * work正常返回时提交; work抛出异常或其中有语句失败时回滚并抛出异常.
+     * 当前线程已在事务中时加入该事务, 由最外层提交.
+     * @param batchWrites 为true时executeUpdate和updateObject的更新缓存到下一个其它语句或提交前, 按批执行,
+     *                    返回 Statement.SUCCESS_NO_INFO
+     * @return work的返回值
+     */
+    protected <T> T inTransaction(boolean batchWrites, TransactionWork<T> work) throws SQLException {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            if (!tx.getPoolName().equals(getWritePool())) {
+                throw new SQLException("a transaction of pool " + tx.getPoolName() + " is already active");
+            }
+            try {
+                return work.run();
+            } catch (Exception e) {
+                tx.setRollbackOnly();
+                throw rethrow(e);
+            }
+        }
+        tx = Transaction.begin(getWritePool(), batchWrites);
+        try {
+            T result = work.run();
+            tx.commit();
+            return result;
+        } catch (Exception e) {
+            tx.rollback();
+            throw rethrow(e);
+        } finally {
+            tx.end();
+        }
+    }
+
+    /**
+     * 连接池耗尽时不返回空结果或0, 而是抛出 {@link UncheckedPoolExhaustedException}, 包括在其它异常中的
+     */
+    static void failFast(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UncheckedPoolExhaustedException) {
+                throw (UncheckedPoolExhaustedException) cause;
+            }
+            if (cause instanceof PoolExhaustedException) {
+                throw new UncheckedPoolExhaustedException((PoolExhaustedException) cause);
+            }
+        }
+    }
+
+    /**
+     * Run the reads of the work on the write pool instead of a replica, for results which are
+     * cached: a lagging replica's old rows would stay in the cache until the ttl.
+     */
+    static <T> T readPrimary(Callable<T> work) throws SQLException {
+        boolean outer = READ_PRIMARY.get() == null;
+        READ_PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.call();
+        } catch (Exception e) {
+            throw rethrow(e);
+        } finally {
+            if (outer) {
+                READ_PRIMARY.remove();
+            }
+        }
+    }
+
+    static boolean isReadingPrimary() {
+        return READ_PRIMARY.get() != null;
+    }
+
+    /**
+     * @return the work for another thread, reading from the write pool if the calling thread does
+     */
+    static <T> Supplier<T> inheritReadPrimary(final Supplier<T> work) {
+        if (!isReadingPrimary()) {
+            return work;
+        }
+        return () -> {
+            READ_PRIMARY.set(Boolean.TRUE);
+            try {
+                return work.get();
+            } finally {
+                READ_PRIMARY.remove();
+            }
+        };
+    }
+
+    /**
+     * @return the work reading from readPool where it would choose a read pool of writePool, so an
+     * async read runs on the pool it waited for
+     */
+    static <T> Supplier<T> onReadPool(final String writePool, final String readPool, final Supplier<T> work) {
+        return () -> {
+            String[] previous = READ_POOL.get();
+            READ_POOL.set(new String[]{writePool, readPool});
+            try {
+                return work.get();
+            } finally {
+                if (previous == null) {
+                    READ_POOL.remove();
+                } else {
+                    READ_POOL.set(previous);
+                }
+            }
+        };
+    }
+
+    private static SQLException rethrow(Exception e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        return e instanceof SQLException ? (SQLException) e : new SQLException(e);
+    }
 	
 	/**
 	 * 适用于执行更新一条语句
 	 */
 	protected int executeUpdate(String sql, Object ... object) {
+		Transaction tx = Transaction.current();
+		if (tx != null && tx.isBatchWrites() && tx.getPoolName().equals(getWritePool())) {
+			tx.addWrite(sql, object);
+			queryWritten(sql);
+			return Statement.SUCCESS_NO_INFO;
+		}
 		DBConnection dbcon = null;
 		int row = 0;
 		try {
-			dbcon = new DBConnection(DB);
+			dbcon = new DBConnection(getWritePool());
 			dbcon.prepareStatement(sql);
 			dbcon.setParams(object);
 			row = dbcon.executeUpdate();
 		} catch (SQLException e) {
+            failFast(e);
             LOGGER.error(e.getMessage());
 		} finally {
 			if (dbcon != null) {
@@ -43,17 +224,69 @@ public class BaseDao {
 				dbcon = null;
 			}
 		}
+		queryWritten(sql);
 		return row;
 	}
 	
 	/**
-	 * 查询并返回结果集(有参数)
+	 * 查询并返回结果集(有参数), SQL匹配 {@link QueryCache#cache(String, long)} 的模式时使用查询缓存
 	 */
 	protected List<Map<String, Object>> executeQuery(String sql, Object ... object) {
+		return executeQueryCached(QueryCache.getTtl(sql), sql, object);
+	}
+
+	/**
+	 * 查询并返回结果集, 结果在查询缓存中保存到ttl过期或查询的表被写入
+	 * @param ttl 以毫秒计的有效时间, 0 为只在写入时失效, 小于0时不使用缓存
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<Map<String, Object>> executeQueryCached(long ttl, String sql, Object ... object) {
+		try {
+			if (ttl < 0 || Transaction.current() != null) {
+				return readMaps(sql, object);
+			}
+			QueryCache.Lookup lookup = QueryCache.lookup(getWritePool(), sql, object);
+			List<Map<String, Object>> rsList = (List<Map<String, Object>>) lookup.get();
+			if (rsList == null) {
+				rsList = readPrimary(() -> readMaps(sql, object));
+				lookup.put(rsList, ttl);
+			}
+			return rsList;
+		} catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+		}
+		return new ArrayList<Map<String, Object>>();
+	}
+
+	/**
+	 * 使用默认的有效时间 {@link QueryCache#getDefaultTtl()} 缓存查询结果
+	 */
+	protected List<Map<String, Object>> executeQueryCached(String sql, Object ... object) {
+		return executeQueryCached(QueryCache.getDefaultTtl(), sql, object);
+	}
+
+	/**
+	 * queryMaps, shared with identical concurrent calls when single flight is on
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Map<String, Object>> readMaps(final String sql, final Object[] object) throws SQLException {
+		if (!singleFlight || Transaction.current() != null) {
+			return queryMaps(sql, object);
+		}
+		try {
+			return SingleFlight.execute(flightPool(), Map.class, sql, object,
+					() -> queryMaps(sql, object), rows -> (List<Map<String, Object>>) QueryCache.copy(rows));
+		} catch (Exception e) {
+			throw rethrow(e);
+		}
+	}
+
+	private List<Map<String, Object>> queryMaps(String sql, Object[] object) throws SQLException {
 		DBConnection dbcon = null;
 		List<Map<String, Object>> rsList = new ArrayList<Map<String, Object>>();
 		try {
-			dbcon = new DBConnection(DB);
+			dbcon = new DBConnection(getReadPool());
 			dbcon.prepareStatement(sql);
 			dbcon.setParams(object);
 			ResultSet rs = dbcon.executeQuery();
@@ -70,8 +303,7 @@ public class BaseDao {
 				}
 				rsList.add(rowMap);
 			}
-		} catch (SQLException e) {
-            LOGGER.error(e.getMessage());
+			dbcon.countRows(rsList.size());
 		} finally {
 			if (dbcon != null) {
 				dbcon.free();
@@ -81,19 +313,92 @@ public class BaseDao {
 		return rsList;
 	}
 
+    /**
+     * 查询第一行第一列的整数, SQL匹配 {@link QueryCache#cache(String, long)} 的模式时使用查询缓存
+     */
     protected int selectCount(String sql, Object ... object) {
+        return selectCountCached(QueryCache.getTtl(sql), sql, object);
+    }
+
+    /**
+     * 查询第一行第一列的整数, 结果在查询缓存中保存到ttl过期或查询的表被写入
+     * @param ttl 以毫秒计的有效时间, 0 为只在写入时失效, 小于0时不使用缓存
+     */
+    protected int selectCountCached(long ttl, String sql, Object ... object) {
+        try {
+            if (ttl < 0 || Transaction.current() != null) {
+                return queryCount(sql, object);
+            }
+            QueryCache.Lookup lookup = QueryCache.lookup(getWritePool(), sql, object);
+            Integer count = (Integer) lookup.get();
+            if (count == null) {
+                count = readPrimary(() -> queryCount(sql, object));
+                lookup.put(count, ttl);
+            }
+            return count;
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * 使用默认的有效时间 {@link QueryCache#getDefaultTtl()} 缓存查询结果
+     */
+    protected int selectCountCached(String sql, Object ... object) {
+        return selectCountCached(QueryCache.getDefaultTtl(), sql, object);
+    }
+
+    private int queryCount(String sql, Object[] object) throws SQLException {
         DBConnection dbcon = null;
         int count = 0;
         try {
-            dbcon = new DBConnection(DB);
-            dbcon.prepareStatement(sql);
-            dbcon.setParams(object);
-            ResultSet rs = dbcon.executeQuery();
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = queryFirstRow(dbcon, sql, object);
 
             if(rs.next()) {
                 count = rs.getInt(1);
+                dbcon.countRows(1);
+            }
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 执行最多返回一行的查询, 用于读取第一行第一列
+     */
+    private static ResultSet queryFirstRow(DBConnection dbcon, String sql, Object[] object) throws SQLException {
+        dbcon.prepareStatement(sql);
+        dbcon.setParams(object);
+        dbcon.setMaxRows(1);
+        return dbcon.executeQuery();
+    }
+
+    /**
+     * 查询第一行第一列的整数
+     * @param defaultValue 没有结果或为NULL时的返回值
+     */
+    protected int selectInt(String sql, int defaultValue, Object ... object) {
+        DBConnection dbcon = null;
+        int value = defaultValue;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = queryFirstRow(dbcon, sql, object);
+            if (rs.next()) {
+                value = rs.getInt(1);
+                if (rs.wasNull()) {
+                    value = defaultValue;
+                }
+                dbcon.countRows(1);
             }
         } catch (SQLException e) {
+            failFast(e);
             LOGGER.error(e.getMessage());
         } finally {
             if (dbcon != null) {
@@ -101,34 +406,165 @@ public class BaseDao {
                 dbcon = null;
             }
         }
-        return count;
+        return value;
+    }
+
+    /**
+     * 查询第一行第一列的长整数
+     * @param defaultValue 没有结果或为NULL时的返回值
+     */
+    protected long selectLong(String sql, long defaultValue, Object ... object) {
+        DBConnection dbcon = null;
+        long value = defaultValue;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = queryFirstRow(dbcon, sql, object);
+            if (rs.next()) {
+                value = rs.getLong(1);
+                if (rs.wasNull()) {
+                    value = defaultValue;
+                }
+                dbcon.countRows(1);
+            }
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 查询第一行第一列的浮点数
+     * @param defaultValue 没有结果或为NULL时的返回值
+     */
+    protected double selectDouble(String sql, double defaultValue, Object ... object) {
+        DBConnection dbcon = null;
+        double value = defaultValue;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = queryFirstRow(dbcon, sql, object);
+            if (rs.next()) {
+                value = rs.getDouble(1);
+                if (rs.wasNull()) {
+                    value = defaultValue;
+                }
+                dbcon.countRows(1);
+            }
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 查询第一行第一列的字符串
+     * @param defaultValue 没有结果或为NULL时的返回值
+     */
+    protected String selectString(String sql, String defaultValue, Object ... object) {
+        DBConnection dbcon = null;
+        String value = defaultValue;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = queryFirstRow(dbcon, sql, object);
+            if (rs.next()) {
+                value = rs.getString(1);
+                if (value == null) {
+                    value = defaultValue;
+                }
+                dbcon.countRows(1);
+            }
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return 查询是否返回至少一行
+     */
+    protected boolean exists(String sql, Object ... object) {
+        DBConnection dbcon = null;
+        boolean exists = false;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = queryFirstRow(dbcon, sql, object);
+            exists = rs.next();
+            dbcon.countRows(exists ? 1 : 0);
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        return exists;
     }
 
+    /**
+     * 查询并把每行映射为cl的对象. 设置了 {@link #setSingleFlight(boolean)} 时与其它线程相同的查询合并执行
+     */
     protected List selectList(String sql, Class cl, Object ... object) {
+        try {
+            if (!singleFlight || Transaction.current() != null) {
+                return queryList(getReadPool(), sql, cl, object);
+            }
+            return SingleFlight.execute(flightPool(), cl, sql, object,
+                    () -> queryList(getReadPool(), sql, cl, object), rows -> copyList(cl, rows));
+        } catch (Exception e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        }
+        return new ArrayList<Object>();
+    }
+
+    /**
+     * 读写连接池的读取不与可能读副本的相同查询合并
+     */
+    private String flightPool() {
+        return isReadingPrimary() ? getWritePool() + "/primary" : getWritePool();
+    }
+
+    /**
+     * selectList on the pool, throwing the errors
+     */
+    List<Object> queryList(String pool, String sql, Class<?> cl, Object[] object) throws Exception {
         DBConnection dbcon = null;
         List<Object> rsList = new ArrayList<Object>();
         try {
-            dbcon = new DBConnection(DB);
+            dbcon = new DBConnection(pool);
             dbcon.prepareStatement(sql);
             dbcon.setParams(object);
             ResultSet rs = dbcon.executeQuery();
 
-            ResultSetMetaData rsmd = dbcon.getPrepStmt().getMetaData();
-            int columnCount = rsmd.getColumnCount();
-
+            RowMapper<?> mapper = EntityMappers.rowMapper(cl, rs.getMetaData());
+            boolean tracked = DirtyTracker.isTracked(cl);
             while(rs.next()) {
-                Map<String, Object> rowMap = new HashMap<String, Object>();
-                for(int i = 0; i < columnCount; i++) {
-                    String columnLabel = rsmd.getColumnLabel(i + 1);
-                    Object obj = rs.getObject(i + 1);
-                    rowMap.put(columnLabel, obj);
+                Object row = mapper.mapRow(rs);
+                if (tracked) {
+                    DirtyTracker.snapshot(row);
                 }
-                Object instance = cl.newInstance();
-                fillObject(instance, rowMap);
-                rsList.add(instance);
+                rsList.add(row);
             }
-        } catch (Exception e) {
-            LOGGER.error(e.getMessage());
+            dbcon.countRows(rsList.size());
         } finally {
             if (dbcon != null) {
                 dbcon.free();
@@ -138,6 +574,47 @@ public class BaseDao {
         return rsList;
     }
 
+    /**
+     * 复制selectList的结果给合并执行的其它调用者
+     */
+    private static List<Object> copyList(Class<?> cl, List<Object> rows) throws Exception {
+        EntityMetadata metadata = EntityMetadata.forClass(cl);
+        boolean tracked = DirtyTracker.isTracked(cl);
+        List<Object> copy = new ArrayList<Object>(rows.size());
+        for (Object row : rows) {
+            Object rowCopy = EntityCache.copy(metadata, row);
+            if (tracked) {
+                DirtyTracker.snapshot(rowCopy);
+            }
+            copy.add(rowCopy);
+        }
+        return copy;
+    }
+
+    /**
+     * 查询并按列返回结果集, 数值列保存在基本类型数组中, 适用于返回大量数值行的统计查询
+     */
+    protected ColumnarResult executeColumnar(String sql, Object ... object) {
+        DBConnection dbcon = null;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            dbcon.prepareStatement(sql);
+            dbcon.setParams(object);
+            ColumnarResult result = ColumnarResult.read(dbcon.executeQuery());
+            dbcon.countRows(result.getRowCount());
+            return result;
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        return ColumnarResult.EMPTY;
+    }
+
 	/**
 	 * 查询并返回结果集(无参数)
 	 */
@@ -145,7 +622,7 @@ public class BaseDao {
 		DBConnection dbcon = null;
 		List<Object[]> rsList = new ArrayList<Object[]>();
 		try {
-			dbcon = new DBConnection(DB);
+			dbcon = new DBConnection(getReadPool());
 			dbcon.prepareStatement(sql);
 			ResultSet rs = dbcon.executeQuery();
 			
@@ -159,7 +636,9 @@ public class BaseDao {
 				}
 				rsList.add(objs);
 			}
+			dbcon.countRows(rsList.size());
 		} catch (SQLException e) {
+            failFast(e);
             LOGGER.error(e.getMessage());
 		} finally {
 			if (dbcon != null) {
@@ -178,11 +657,12 @@ public class BaseDao {
 		DBConnection dbcon = null;
 		int id = 0;
 		try {
-			dbcon = new DBConnection(DB);
+			dbcon = new DBConnection(getWritePool());
 			dbcon.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
 			dbcon.setParams(object);
 			id = dbcon.executeInsert();
 		} catch (SQLException e) {
+            failFast(e);
             LOGGER.error(e.getMessage());
 		} finally {
 			if (dbcon != null) {
@@ -190,25 +670,67 @@ public class BaseDao {
 				dbcon = null;
 			}
 		}
+		queryWritten(sql);
 		return id;
 	}
 
     /**
      * 将object数据插入匹配的数据库表中
-     * 该object对象使用注解匹配数据库表及字段
+     * 该object对象使用注解匹配数据库表及字段. 设置了 {@link #setInsertCoalescing(long, int)} 时与其它线程的插入合并执行
      * @return 插入后的ID
      */
     protected int executeInsert(Object object) {
+        InsertCoalescer coalescer = insertCoalescer;
+        if (coalescer != null && Transaction.current() == null) {
+            try {
+                return coalescer.insert(getWritePool(), object);
+            } catch (Exception e) {
+                failFast(e);
+                LOGGER.error(e);
+                return 0;
+            }
+        }
+        return insertOne(object);
+    }
+
+    /**
+     * 合并并发的 executeInsert(Object): 一批的第一个调用者最多等待 lingerMillis 毫秒或凑满 maxBatchSize 行,
+     * 然后把同一连接池, 表和字段的插入在一个连接的一个事务中批量执行, 每个调用者得到自己的ID.
+     * 批量执行失败时逐行重试, 只有失败的行返回0. lingerMillis 为0时不合并
+     */
+    protected void setInsertCoalescing(long lingerMillis, int maxBatchSize) {
+        this.insertCoalescer = lingerMillis > 0 ? new InsertCoalescer(this, lingerMillis, maxBatchSize) : null;
+    }
+
+    /**
+     * 合并相同的并发读: 同一连接池, SQL和参数的 executeQuery 和 selectList 正在被其它线程执行时等待其结果,
+     * 而不是再占用一个连接执行一次. 每个调用者得到自己的一份结果, 事务中的查询不合并.
+     * 节省的执行次数见 {@link SingleFlight#getStats()}
+     */
+    protected void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * executeInsert(Object) without coalescing.
+     */
+    int insertOne(Object object) {
         DBConnection dbcon = null;
         int id = 0;
         try {
             List<Object> params = new ArrayList<Object>();
-            String sql = inserSql(params, object);
-            dbcon = new DBConnection(DB);
+            String sql = EntitySql.insertSql(params, object);
+            dbcon = new DBConnection(getWritePool());
             dbcon.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
-            dbcon.setParams(params.toArray());
+            EntityMapper<Object> mapper = EntityMappers.forObject(object);
+            if (mapper != null && sql.equals(mapper.getInsertSql())) {
+                mapper.bindInsert(dbcon.getPrepStmt(), object);
+            } else {
+                dbcon.setParams(params.toArray());
+            }
             id = dbcon.executeInsert();
         } catch (Exception e) {
+            failFast(e);
             LOGGER.error(e);
             return 0;
         } finally {
@@ -217,166 +739,519 @@ public class BaseDao {
                 dbcon = null;
             }
         }
+        invalidateCached(object, id);
         return id;
     }
 
-    private String inserSql(List<Object> params, Object object) throws Exception {
-        StringBuilder sql = new StringBuilder();
-        sql.append("INSERT INTO ");
-        Class<?> cl = object.getClass();
-        // Get table name annnotation
-        Table table = cl.getAnnotation(Table.class);
-        if (table == null) {
-            throw new AnnotaionParseException("Count not find table annotation in model class");
-        }
-        sql.append(table.name());
-
-        StringBuilder values = new StringBuilder();
-        sql.append(" (");
-        values.append(" (");
-        for (Field field : cl.getDeclaredFields()) {
-            // Get column annotation
-            Column column = field.getAnnotation(Column.class);
-            if (column != null) {
-                try {
-                    String methodName = getFieldGetMethod(field);
-                    Method method = cl.getDeclaredMethod(methodName);
-                    Object obj = method.invoke(object);
-
-                    if (obj != null) {
-                        sql.append(column.column()).append(",");
-                        values.append("?,");
-                        params.add(obj);
-                    }
-                } catch (NoSuchMethodException e) {
-                    LOGGER.error(e.getMessage());
-                } catch (IllegalAccessException e) {
-                    LOGGER.error(e.getMessage());
-                } catch (IllegalArgumentException e) {
-                    LOGGER.error(e.getMessage());
-                } catch (InvocationTargetException e) {
-                    LOGGER.error(e.getMessage());
+    /**
+     * 将object数据匹配到数据库中的数据更新
+     * object对象必须有id字段. {@link com.janekey.mdao.annotation.Tracked} 的对象只更新查询后修改过的字段
+     * @return 更新的行数; 跟踪的对象没有修改时不执行并返回1, 与MySQL返回的匹配行数相同
+     */
+    protected int updateObject(Object object) {
+        int update = 0;
+        try {
+            List<Object> params = new ArrayList<Object>();
+            String sql = EntitySql.updateSql(params, object);
+            if (sql == null) {
+                return 1;
+            }
+            EntityMapper<Object> mapper = EntityMappers.forObject(object);
+            Transaction tx = Transaction.current();
+            boolean batched = tx != null && tx.isBatchWrites() && tx.getPoolName().equals(getWritePool());
+            if (mapper != null && !batched && sql.equals(mapper.getUpdateSql())) {
+                update = updateBound(mapper, sql, object);
+            } else {
+                update = executeUpdate(sql, params.toArray());
+            }
+            if (update != 0) {
+                trackWritten(object);
+            }
+        } catch (Exception e) {
+            failFast(e);
+            LOGGER.error(e);
+            return 0;
+        }
+        invalidateCached(object, null);
+        return update;
+    }
+
+    /**
+     * 用生成的mapper的类型化setter设置 {@link EntityMapper#getUpdateSql()} 的参数并执行
+     */
+    private int updateBound(EntityMapper<Object> mapper, String sql, Object object) throws SQLException {
+        DBConnection dbcon = null;
+        try {
+            dbcon = new DBConnection(getWritePool());
+            dbcon.prepareStatement(sql);
+            mapper.bindUpdate(dbcon.getPrepStmt(), object);
+            return dbcon.executeUpdate();
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+            queryWritten(sql);
+        }
+    }
+
+    /**
+     * 保存跟踪的对象当前的字段值
+     */
+    private static void track(Object object) throws Exception {
+        if (DirtyTracker.isTracked(object.getClass())) {
+            DirtyTracker.snapshot(object);
+        }
+    }
+
+    /**
+     * 写入后保存跟踪的对象的字段值. 在写连接池的事务中时只在事务提交后保存, 回滚时丢弃快照,
+     * 使下一次更新写入所有字段
+     */
+    private void trackWritten(final Object object) throws Exception {
+        if (!DirtyTracker.isTracked(object.getClass())) {
+            return;
+        }
+        final Transaction tx = Transaction.current();
+        if (tx == null || !tx.getPoolName().equals(getWritePool())) {
+            DirtyTracker.snapshot(object);
+            return;
+        }
+        final Object[] values = DirtyTracker.capture(object);
+        tx.afterCompletion(new Runnable() {
+            public void run() {
+                if (tx.isCommitted()) {
+                    DirtyTracker.put(object, values);
+                } else {
+                    DirtyTracker.forget(object);
                 }
             }
+        });
+    }
+
+    /**
+     * 按id查询一行, 模型类有 {@link com.janekey.mdao.annotation.Cache} 注解时先查实体缓存
+     * @return 查询到的对象或null
+     */
+    protected <T> T findById(Class<T> cl, Object id) {
+        try {
+            EntityCache cache = EntityCache.forClass(cl);
+            if (cache == null || Transaction.current() != null) {
+                return loadById(cl, id);
+            }
+            Object cached = cache.get(id);
+            if (cached != null) {
+                track(cached);
+                return cl.cast(cached);
+            }
+            long generation = cache.generation();
+            T row = readPrimary(() -> loadById(cl, id));
+            if (row != null) {
+                cache.put(id, row, generation);
+            }
+            return row;
+        } catch (Exception e) {
+            failFast(e);
+            LOGGER.error(e);
+            return null;
         }
-        sql.deleteCharAt(sql.length() - 1).append(")");
-        values.deleteCharAt(values.length() - 1).append(")");
-
-        sql.append(" VALUES ").append(values);
-        return sql.toString();
-    }
-
-    private String updateSql(List<Object> params, Object object) throws Exception {
-        StringBuilder sql = new StringBuilder();
-        sql.append("UPDATE ");
-        Class<?> cl = object.getClass();
-        // Get table name annnotation
-        Table table = cl.getAnnotation(Table.class);
-        if (table == null) {
-            throw new AnnotaionParseException("Count not find table annotation in model class");
-        }
-        sql.append(table.name()).append(" SET ");
-
-        Object id = null;
-        for (Field field : cl.getDeclaredFields()) {
-            // Get column annotation
-            Column column = field.getAnnotation(Column.class);
-            if (column != null) {
-                try {
-                    String methodName = getFieldGetMethod(field);
-                    Method method = cl.getDeclaredMethod(methodName);
-                    Object obj = method.invoke(object);
-
-                    if (obj != null) {
-                        if (column.column().equals("id")) {
-                            id = obj;
-                        } else {
-                            sql.append(column.column()).
-                                    append(" = ?,");
-                            params.add(obj);
-                        }
-                    }
-                } catch (NoSuchMethodException e) {
-                    LOGGER.error(e.getMessage());
-                } catch (IllegalAccessException e) {
-                    LOGGER.error(e.getMessage());
-                } catch (IllegalArgumentException e) {
-                    LOGGER.error(e.getMessage());
-                } catch (InvocationTargetException e) {
-                    LOGGER.error(e.getMessage());
+    }
+
+    /**
+     * 按id查询多行, id去重后以固定大小的 'id IN (...)' 分块查询, 先查实体缓存
+     * @return 查询到的对象, 按ids中第一次出现的顺序, 没有查询到的id被跳过
+     */
+    protected <T> List<T> findByIds(Class<T> cl, Collection<?> ids) {
+        return new ArrayList<T>(findByIdsAsMap(cl, ids).values());
+    }
+
+    /**
+     * 同 {@link #findByIds(Class, Collection)}
+     * @return 以ids中的id为键, 按其顺序的对象, 没有查询到的id不在其中
+     * @throws IllegalArgumentException id不能转换为id字段的类型时, 如 "a" 之于Integer的id
+     */
+    protected <T> Map<Object, T> findByIdsAsMap(Class<T> cl, Collection<?> ids) {
+        try {
+            return IdLoader.load(this, cl, ids, idChunkSize, parallelIdChunks);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            failFast(e);
+            LOGGER.error(e);
+            return new LinkedHashMap<Object, T>();
+        }
+    }
+
+    /**
+     * findByIds 每次 'IN (...)' 查询的id个数, 默认100. parallel 为true时事务外的各块同时在连接池的多个连接上查询
+     */
+    protected void setIdChunks(int chunkSize, boolean parallel) {
+        this.idChunkSize = Math.max(1, Math.min(chunkSize, MAX_PARAMS));
+        this.parallelIdChunks = parallel;
+    }
+
+    /**
+     * 按id顺序分页遍历cl的表, 每页最多pageSize行, 用 'id &gt; 上一页最后的id' 代替OFFSET.
+     * 可用 {@link KeysetPager#startAfter(Object)} 从上次的 getLastKey() 继续, 用
+     * {@link KeysetPager#prefetch(boolean)} 在后台预读下一页. 所有页从创建时的读连接池读取,
+     * 读取失败时 hasNext 和 next 抛出异常, 而不是像结束一样返回
+     * @param where 可选的WHERE条件, 如 "status = ?", 参数为object
+     */
+    protected <T> KeysetPager<T> pages(Class<T> cl, int pageSize, String where, Object ... object) {
+        return new KeysetPager<T>(this, cl, pageSize, where, object);
+    }
+
+    private <T> T loadById(Class<T> cl, Object id) throws AnnotaionParseException {
+        EntityMetadata metadata = EntityMetadata.forClass(cl);
+        List<?> rows = selectList("SELECT * FROM " + metadata.getTableName()
+                + " WHERE " + EntityMetadata.ID_COLUMN + " = ?", cl, id);
+        return rows.isEmpty() ? null : cl.cast(rows.get(0));
+    }
+
+    /**
+     * 写入后使读取其表的查询缓存失效, 在事务中时在事务结束后再次失效
+     */
+    private static void queryWritten(final String sql) {
+        QueryCache.written(sql);
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            tx.afterCompletion(new Runnable() {
+                public void run() {
+                    QueryCache.written(sql);
+                }
+            });
+        }
+    }
+
+    /**
+     * 写入后使object在实体缓存中的行和读取其表的查询缓存失效, 在事务中时在事务结束后再次失效
+     * @param id object的id, 为null时从object读取
+     */
+    private static void invalidateCached(final Object object, final Object id) {
+        Transaction tx = Transaction.current();
+        if (tx != null) {
+            tx.afterCompletion(new Runnable() {
+                public void run() {
+                    invalidateCached(object, id);
                 }
+            });
+        }
+        try {
+            QueryCache.invalidate(EntityMetadata.forClass(object.getClass()).getTableName());
+            EntityCache cache = EntityCache.forClass(object.getClass());
+            if (cache == null) {
+                return;
+            }
+            Object key = id;
+            if (key == null) {
+                ColumnMetadata idColumn = EntityMetadata.forClass(object.getClass()).getIdColumn();
+                key = idColumn == null ? null : idColumn.get(object);
             }
+            if (key != null) {
+                cache.invalidate(key);
+            }
+        } catch (Exception e) {
+            LOGGER.error(e);
         }
-        sql.deleteCharAt(sql.length() - 1);
-        sql.append(" WHERE id = ? ");
-        params.add(id);
-        return sql.toString();
     }
 
     /**
-     * 将object数据匹配到数据库中的数据更新
-     * object对象必须有id字段
-     * @return 更新的行数
+     * 批量操作每次执行的最大行数
      */
-    protected int updateObject(Object object) {
-        int update = 0;
+    protected void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * insertAll 是否把每批数据改写为一条多行VALUES的INSERT语句, 默认使用JDBC批处理
+     */
+    protected void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    /**
+     * 批量插入object数据. 不为null的字段相同的object为一组, 每组按batchSize分批执行,
+     * 所有批次在同一个连接的同一个事务中执行
+     * @return 每个object插入后的ID, 与objects的顺序相同; 失败时全部为0
+     */
+    protected int[] insertAll(List<?> objects) {
+        if (objects.isEmpty()) {
+            return new int[0];
+        }
         try {
-            List<Object> params = new ArrayList<Object>();
-            String sql = updateSql(params, object);
-            update = executeUpdate(sql, params.toArray());
+            return insertBatch(objects);
         } catch (Exception e) {
+            failFast(e);
             LOGGER.error(e);
-            return 0;
+            return new int[objects.size()];
         }
-        return update;
     }
 
-    private void fillObject(Object object, Map<String, Object> rowMap)
-            throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-        Class<?> cl = object.getClass();
-        for (Field field : cl.getDeclaredFields()) {
-            // Get column annotation
-            Column column = field.getAnnotation(Column.class);
-            if (column != null) {
-                Object obj = rowMap.get(column.column());
-                if (obj != null) {
-                    String methodName = getFieldSetMethod(field);
-                    Method method = cl.getDeclaredMethod(methodName, field.getType());
-                    method.invoke(object, obj);
+    /**
+     * insertAll, throwing the error after rolling back.
+     */
+    int[] insertBatch(List<?> objects) throws Exception {
+        int[] ids = new int[objects.size()];
+        DBConnection dbcon = null;
+        boolean autoCommit = true;
+        try {
+            List<Object[]> params = new ArrayList<Object[]>(objects.size());
+            Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+            for (int i = 0; i < objects.size(); i++) {
+                List<Object> rowParams = new ArrayList<Object>();
+                String sql = EntitySql.insertSql(rowParams, objects.get(i));
+                params.add(rowParams.toArray());
+                group(groups, sql).add(i);
+            }
+            dbcon = new DBConnection(getWritePool());
+            autoCommit = dbcon.getAutoCommit();
+            dbcon.setAutoCommit(false);
+            for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+                List<Integer> rows = group.getValue();
+                int columnCount = params.get(rows.get(0)).length;
+                int chunkSize = multiRowInsert ? Math.min(batchSize, Math.max(MAX_PARAMS / columnCount, 1)) : batchSize;
+                for (int from = 0; from < rows.size(); from += chunkSize) {
+                    List<Integer> chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+                    if (multiRowInsert) {
+                        dbcon.prepareStatement(EntitySql.multiRowInsertSql(group.getKey(), columnCount, chunk.size()),
+                                PreparedStatement.RETURN_GENERATED_KEYS);
+                        int index = 0;
+                        for (Integer row : chunk) {
+                            for (Object param : params.get(row)) {
+                                dbcon.setParam(++index, param);
+                            }
+                        }
+                        dbcon.executeUpdate();
+                    } else {
+                        dbcon.prepareStatement(group.getKey(), PreparedStatement.RETURN_GENERATED_KEYS);
+                        for (Integer row : chunk) {
+                            dbcon.setParams(params.get(row));
+                            dbcon.addBatch();
+                        }
+                        dbcon.executeBatch();
+                    }
+                    int[] keys = dbcon.getGeneratedKeys(chunk.size());
+                    for (int i = 0; i < keys.length; i++) {
+                        ids[chunk.get(i)] = keys[i];
+                    }
+                }
+            }
+            dbcon.commitChecked();
+        } catch (Exception e) {
+            if (dbcon != null) {
+                dbcon.rollback();
+            }
+            throw e;
+        } finally {
+            if (dbcon != null) {
+                restoreAutoCommit(dbcon, autoCommit);
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            invalidateCached(objects.get(i), ids[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * 批量按id更新object数据. 更新字段相同的object为一组, 每组按batchSize分批执行,
+     * 所有批次在同一个连接的同一个事务中执行
+     * @return 每个object更新的行数, 与objects的顺序相同; 失败时全部为0
+     */
+    protected int[] updateAll(List<?> objects) {
+        int[] updates = new int[objects.size()];
+        if (objects.isEmpty()) {
+            return updates;
+        }
+        DBConnection dbcon = null;
+        boolean autoCommit = true;
+        try {
+            List<Object[]> params = new ArrayList<Object[]>(objects.size());
+            Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+            for (int i = 0; i < objects.size(); i++) {
+                List<Object> rowParams = new ArrayList<Object>();
+                String sql = EntitySql.updateSql(rowParams, objects.get(i));
+                params.add(rowParams.toArray());
+                if (sql == null) {
+                    // 跟踪的对象没有修改
+                    updates[i] = 1;
+                } else {
+                    group(groups, sql).add(i);
+                }
+            }
+            if (groups.isEmpty()) {
+                return updates;
+            }
+            dbcon = new DBConnection(getWritePool());
+            autoCommit = dbcon.getAutoCommit();
+            dbcon.setAutoCommit(false);
+            for (Map.Entry<String, List<Integer>> group : groups.entrySet()) {
+                List<Integer> rows = group.getValue();
+                for (int from = 0; from < rows.size(); from += batchSize) {
+                    List<Integer> chunk = rows.subList(from, Math.min(from + batchSize, rows.size()));
+                    dbcon.prepareStatement(group.getKey());
+                    for (Integer row : chunk) {
+                        dbcon.setParams(params.get(row));
+                        dbcon.addBatch();
+                    }
+                    int[] counts = dbcon.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        updates[chunk.get(i)] = counts[i];
+                    }
                 }
             }
+            dbcon.commitChecked();
+        } catch (Exception e) {
+            failFast(e);
+            LOGGER.error(e);
+            if (dbcon != null) {
+                dbcon.rollback();
+            }
+            return new int[objects.size()];
+        } finally {
+            if (dbcon != null) {
+                restoreAutoCommit(dbcon, autoCommit);
+                dbcon.free();
+                dbcon = null;
+            }
+        }
+        for (Object object : objects) {
+            try {
+                trackWritten(object);
+            } catch (Exception e) {
+                LOGGER.error(e);
+            }
+            invalidateCached(object, null);
+        }
+        return updates;
+    }
+
+    private static List<Integer> group(Map<String, List<Integer>> groups, String sql) {
+        List<Integer> rows = groups.get(sql);
+        if (rows == null) {
+            rows = new ArrayList<Integer>();
+            groups.put(sql, rows);
+        }
+        return rows;
+    }
+
+    private static void restoreAutoCommit(DBConnection dbcon, boolean autoCommit) {
+        try {
+            dbcon.setAutoCommit(autoCommit);
+        } catch (SQLException e) {
+            LOGGER.error(e.getMessage());
         }
+    }
 
+    /**
+     * 流式查询每次读取的行数, 0 时使用连接池的 fetchsize 配置
+     */
+    protected void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 流式查询, 逐行回调而不把结果集读入内存. 连接只在遍历期间占用
+     */
+    protected void forEach(String sql, RowCallback callback, Object ... object) {
+        DBConnection dbcon = null;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = executeStreaming(dbcon, sql, object);
+            int rows = 0;
+            while (rs.next()) {
+                callback.processRow(rs);
+                rows++;
+            }
+            dbcon.countRows(rows);
+        } catch (SQLException e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+        } finally {
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+        }
     }
 
     /**
-     * 获取属性的Get方法名
-     * If field name is 'name', and return 'getName'.
+     * 流式查询, 返回的Stream在遍历时逐行读取并映射为cl对象.
+     * 连接在Stream遍历结束或close时释放, 请在try-with-resources中使用
      */
-    private String getFieldGetMethod(Field field) {
-        StringBuilder methodName = new StringBuilder();
-        String fieldName = field.getName();
-        String first = String.valueOf(fieldName.charAt(0)).toUpperCase();
-        methodName.append("get").append(first);
-        if (fieldName.length() > 1) {
-            methodName.append(fieldName.substring(1));
+    protected <T> Stream<T> stream(String sql, Class<T> cl, Object ... object) {
+        DBConnection dbcon = null;
+        try {
+            dbcon = new DBConnection(getReadPool());
+            ResultSet rs = executeStreaming(dbcon, sql, object);
+            RowMapper<T> mapper = EntityMappers.rowMapper(cl, rs.getMetaData());
+            final StreamingRows<T> rows = new StreamingRows<T>(dbcon, rs, mapper);
+            return StreamSupport.stream(rows, false).onClose(new Runnable() {
+                public void run() {
+                    rows.close();
+                }
+            });
+        } catch (Exception e) {
+            failFast(e);
+            LOGGER.error(e.getMessage());
+            if (dbcon != null) {
+                dbcon.free();
+                dbcon = null;
+            }
+            return Stream.empty();
         }
-        return methodName.toString();
+    }
+
+    private ResultSet executeStreaming(DBConnection dbcon, String sql, Object[] object) throws SQLException {
+        dbcon.prepareStatement(sql);
+        dbcon.setParams(object);
+        dbcon.setFetchSize(fetchSize != 0 ? fetchSize : dbcon.getStreamingFetchSize());
+        return dbcon.executeQuery();
     }
 
     /**
-     * 获取属性的Set方法名
-     * If field name is 'name', and return 'setName'.
+     * Rows of a streaming query, the connection is freed at the end of the result set or on close.
      */
-    private String getFieldSetMethod(Field field) {
-        StringBuilder methodName = new StringBuilder();
-        String fieldName = field.getName();
-        String first = String.valueOf(fieldName.charAt(0)).toUpperCase();
-        methodName.append("set").append(first);
-        if (fieldName.length() > 1) {
-            methodName.append(fieldName.substring(1));
+    private static final class StreamingRows<T> extends Spliterators.AbstractSpliterator<T> {
+        private DBConnection dbcon;
+        private final ResultSet rs;
+        private final RowMapper<T> mapper;
+        private int rows;
+
+        StreamingRows(DBConnection dbcon, ResultSet rs, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.dbcon = dbcon;
+            this.rs = rs;
+            this.mapper = mapper;
+        }
+
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (dbcon == null) {
+                return false;
+            }
+            try {
+                if (rs.next()) {
+                    rows++;
+                    action.accept(mapper.mapRow(rs));
+                    return true;
+                }
+            } catch (SQLException e) {
+                close();
+                throw new IllegalStateException(e);
+            }
+            close();
+            return false;
+        }
+
+        void close() {
+            if (dbcon != null) {
+                dbcon.countRows(rows);
+                dbcon.free();
+                dbcon = null;
+            }
         }
-        return methodName.toString();
     }
 
-}
+}
\ No newline at end of file
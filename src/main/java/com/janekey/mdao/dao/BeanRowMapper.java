@@ -0,0 +1,304 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Row mapper of a {@link com.janekey.mdao.annotation.Table} model class.
+ * Result set columns are bound to the model columns once per query shape (model class and column labels),
+ * every row is then read with typed getters by column index and written through method handles.
+ * Columns which are null in the row are not set, the same as filling the object from a row map.
+ */
+public final class BeanRowMapper<T> implements RowMapper<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final ConcurrentHashMap<String, BeanRowMapper<?>> SHAPES =
+            new ConcurrentHashMap<String, BeanRowMapper<?>>();
+
+    private final MethodHandle constructor;
+    private final Binding[] bindings;
+
+    private BeanRowMapper(MethodHandle constructor, Binding[] bindings) {
+        this.constructor = constructor;
+        this.bindings = bindings;
+    }
+
+    /**
+     * Get the row mapper of the model class for the shape of the result set.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanRowMapper<T> forShape(Class<T> cl, ResultSetMetaData rsmd)
+            throws SQLException, AnnotaionParseException {
+        int columnCount = rsmd.getColumnCount();
+        StringBuilder key = new StringBuilder(cl.getName());
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = rsmd.getColumnLabel(i + 1);
+            key.append('|').append(labels[i]);
+        }
+        String shape = key.toString();
+        BeanRowMapper<?> mapper = SHAPES.get(shape);
+        if (mapper == null) {
+            mapper = create(cl, labels);
+            BeanRowMapper<?> exist = SHAPES.putIfAbsent(shape, mapper);
+            if (exist != null) {
+                mapper = exist;
+            }
+        }
+        return (BeanRowMapper<T>) mapper;
+    }
+
+    private static <T> BeanRowMapper<T> create(Class<T> cl, String[] labels)
+            throws SQLException, AnnotaionParseException {
+        EntityMetadata metadata = EntityMetadata.forClass(cl);
+        List<Binding> bindings = new ArrayList<Binding>();
+        for (int i = 0; i < labels.length; i++) {
+            ColumnMetadata column = metadata.getColumn(labels[i]);
+            if (column != null && column.isWritable()) {
+                bindings.add(binding(i + 1, column));
+            }
+        }
+        return new BeanRowMapper<T>(constructor(cl), bindings.toArray(new Binding[bindings.size()]));
+    }
+
+    private static MethodHandle constructor(Class<?> cl) throws SQLException {
+        try {
+            Constructor<?> constructor = cl.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return LOOKUP.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+        } catch (Exception e) {
+            throw new SQLException("Could not find default constructor of model class " + cl.getName(), e);
+        }
+    }
+
+    private static Binding binding(int index, ColumnMetadata column) throws SQLException {
+        Class<?> type = column.getType();
+        if (type == int.class || type == Integer.class) {
+            return new IntBinding(index, setter(column, int.class));
+        } else if (type == long.class || type == Long.class) {
+            return new LongBinding(index, setter(column, long.class));
+        } else if (type == double.class || type == Double.class) {
+            return new DoubleBinding(index, setter(column, double.class));
+        } else if (type == float.class || type == Float.class) {
+            return new FloatBinding(index, setter(column, float.class));
+        } else if (type == short.class || type == Short.class) {
+            return new ShortBinding(index, setter(column, short.class));
+        } else if (type == byte.class || type == Byte.class) {
+            return new ByteBinding(index, setter(column, byte.class));
+        } else if (type == boolean.class || type == Boolean.class) {
+            return new BooleanBinding(index, setter(column, boolean.class));
+        } else if (type == String.class) {
+            return new StringBinding(index, setter(column, Object.class));
+        } else if (type == BigDecimal.class) {
+            return new BigDecimalBinding(index, setter(column, Object.class));
+        } else {
+            return new ObjectBinding(index, setter(column, Object.class));
+        }
+    }
+
+    /**
+     * Adapt the setter to (Object, valueType)void so it can be called with invokeExact.
+     */
+    private static MethodHandle setter(ColumnMetadata column, Class<?> valueType) throws SQLException {
+        Method method = column.getSetter();
+        try {
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method).asType(MethodType.methodType(void.class, Object.class, valueType));
+        } catch (IllegalAccessException e) {
+            throw new SQLException("Could not access " + method, e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T mapRow(ResultSet rs) throws SQLException {
+        try {
+            Object instance = constructor.invokeExact();
+            for (Binding binding : bindings) {
+                binding.bind(rs, instance);
+            }
+            return (T) instance;
+        } catch (SQLException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * A result set column index bound to a model setter.
+     */
+    private static abstract class Binding {
+        final int index;
+        final MethodHandle setter;
+
+        Binding(int index, MethodHandle setter) {
+            this.index = index;
+            this.setter = setter;
+        }
+
+        abstract void bind(ResultSet rs, Object target) throws Throwable;
+    }
+
+    private static final class IntBinding extends Binding {
+        IntBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            int value = rs.getInt(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class LongBinding extends Binding {
+        LongBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            long value = rs.getLong(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class DoubleBinding extends Binding {
+        DoubleBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            double value = rs.getDouble(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class FloatBinding extends Binding {
+        FloatBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            float value = rs.getFloat(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class ShortBinding extends Binding {
+        ShortBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            short value = rs.getShort(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class ByteBinding extends Binding {
+        ByteBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            byte value = rs.getByte(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class BooleanBinding extends Binding {
+        BooleanBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            boolean value = rs.getBoolean(index);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class StringBinding extends Binding {
+        StringBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            String value = rs.getString(index);
+            if (value != null) {
+                setter.invokeExact(target, (Object) value);
+            }
+        }
+    }
+
+    private static final class BigDecimalBinding extends Binding {
+        BigDecimalBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            BigDecimal value = rs.getBigDecimal(index);
+            if (value != null) {
+                setter.invokeExact(target, (Object) value);
+            }
+        }
+    }
+
+    /**
+     * Dates and other types keep the driver's object mapping.
+     */
+    private static final class ObjectBinding extends Binding {
+        ObjectBinding(int index, MethodHandle setter) {
+            super(index, setter);
+        }
+
+        @Override
+        void bind(ResultSet rs, Object target) throws Throwable {
+            Object value = rs.getObject(index);
+            if (value != null) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.janekey.mdao.dao;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A resolved {@link com.janekey.mdao.annotation.Column} field of a model class.
+ * Accessors are looked up once, a missing getter or setter is kept as null
+ * and the column is skipped on that path, the same as the reflective code did.
+ */
+public final class ColumnMetadata {
+
+    private final String columnName;
+    private final Field field;
+    private final Method getter;
+    private final Method setter;
+
+    ColumnMetadata(String columnName, Field field, Method getter, Method setter) {
+        this.columnName = columnName;
+        this.field = field;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public Method getGetter() {
+        return getter;
+    }
+
+    public Method getSetter() {
+        return setter;
+    }
+
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Read the column value from the object through its getter.
+     */
+    public Object get(Object object) throws IllegalAccessException, InvocationTargetException {
+        return getter.invoke(object);
+    }
+
+    /**
+     * Write the column value to the object through its setter.
+     */
+    public void set(Object object, Object value) throws IllegalAccessException, InvocationTargetException {
+        setter.invoke(object, value);
+    }
+
+}
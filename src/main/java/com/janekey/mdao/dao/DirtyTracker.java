@@ -0,0 +1,130 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.Tracked;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column values of {@link Tracked} model objects as they were loaded, to find the changed columns.
+ * The objects are held by weak references and compared by identity, a snapshot goes away with
+ * its object.
+ */
+final class DirtyTracker {
+
+    private static final ConcurrentHashMap<Class<?>, Boolean> TRACKED = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private static final ConcurrentHashMap<Key, Object[]> SNAPSHOTS = new ConcurrentHashMap<Key, Object[]>();
+
+    private static final ReferenceQueue<Object> COLLECTED = new ReferenceQueue<Object>();
+
+    private DirtyTracker() {
+    }
+
+    static boolean isTracked(Class<?> cl) {
+        Boolean tracked = TRACKED.get(cl);
+        if (tracked == null) {
+            tracked = cl.isAnnotationPresent(Tracked.class);
+            TRACKED.put(cl, tracked);
+        }
+        return tracked;
+    }
+
+    /**
+     * Remember the current column values of a tracked object.
+     */
+    static void snapshot(Object object) throws Exception {
+        put(object, capture(object));
+    }
+
+    /**
+     * @return a copy of the current column values of the object, for {@link #put(Object, Object[])}
+     */
+    static Object[] capture(Object object) throws Exception {
+        Object[] values = EntitySql.values(object);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = copy(values[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Make values taken by {@link #capture(Object)} the snapshot of the object.
+     */
+    static void put(Object object, Object[] values) {
+        expunge();
+        SNAPSHOTS.put(new Key(object, COLLECTED), values);
+    }
+
+    /**
+     * @return the column values of the last snapshot, in the order of {@link EntityMetadata#getColumns()},
+     * or null if the object is not tracked
+     */
+    static Object[] getSnapshot(Object object) {
+        if (!isTracked(object.getClass())) {
+            return null;
+        }
+        expunge();
+        return SNAPSHOTS.get(new Key(object, null));
+    }
+
+    static void forget(Object object) {
+        SNAPSHOTS.remove(new Key(object, null));
+    }
+
+    static boolean isChanged(Object snapshot, Object value) {
+        if (snapshot == null || value == null) {
+            return snapshot != value;
+        }
+        if (snapshot instanceof byte[] && value instanceof byte[]) {
+            return !Arrays.equals((byte[]) snapshot, (byte[]) value);
+        }
+        return !snapshot.equals(value);
+    }
+
+    private static Object copy(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        return value;
+    }
+
+    private static void expunge() {
+        Reference<?> ref;
+        while ((ref = COLLECTED.poll()) != null) {
+            SNAPSHOTS.remove(ref);
+        }
+    }
+
+    private static final class Key extends WeakReference<Object> {
+        final int hash;
+
+        Key(Object object, ReferenceQueue<Object> queue) {
+            super(object, queue);
+            this.hash = System.identityHashCode(object);
+        }
+
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((Key) o).get();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+import com.janekey.mdao.annotation.Cache;
+import com.janekey.mdao.cache.CacheStats;
+import com.janekey.mdao.cache.LruCache;
+import com.janekey.mdao.metrics.Metrics;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The rows of a {@link Cache} model class by id, used by BaseDao.findById.
+ * The cache keeps its own copy of every row and hands out copies, so callers may change the
+ * objects they get. A row loaded while an invalidation happens is not cached, it may be stale.
+ * The statistics are published through JMX as type EntityCache.
+ */
+public final class EntityCache {
+
+    private static final ConcurrentHashMap<Class<?>, EntityCache> CACHES =
+            new ConcurrentHashMap<Class<?>, EntityCache>();
+
+    private final EntityMetadata metadata;
+    private final LruCache<Object, Object> rows;
+    // 每次失效时加一, 用于丢弃失效前开始加载的行
+    private final AtomicLong generation = new AtomicLong();
+
+    private EntityCache(EntityMetadata metadata, Cache cache) {
+        this.metadata = metadata;
+        this.rows = new LruCache<Object, Object>(cache.maxSize(), cache.ttl());
+    }
+
+    /**
+     * @return the cache of the model class, or null if the class has no {@link Cache} annotation
+     */
+    static EntityCache forClass(Class<?> cl) throws AnnotaionParseException {
+        EntityCache cache = CACHES.get(cl);
+        if (cache == null) {
+            Cache annotation = cl.getAnnotation(Cache.class);
+            if (annotation == null) {
+                return null;
+            }
+            cache = new EntityCache(EntityMetadata.forClass(cl), annotation);
+            EntityCache existing = CACHES.putIfAbsent(cl, cache);
+            if (existing != null) {
+                return existing;
+            }
+            Metrics.registerMBean("EntityCache", cl.getName(), cache.rows.getStats());
+        }
+        return cache;
+    }
+
+    /**
+     * @return hit and miss statistics of the model class, or null if it is not cached
+     */
+    public static CacheStats getStats(Class<?> cl) {
+        EntityCache cache = CACHES.get(cl);
+        return cache == null ? null : cache.rows.getStats();
+    }
+
+    /**
+     * Drop all cached rows of the model class, after it was changed by SQL.
+     */
+    public static void invalidateAll(Class<?> cl) {
+        EntityCache cache = CACHES.get(cl);
+        if (cache != null) {
+            cache.generation.incrementAndGet();
+            cache.rows.clear();
+        }
+    }
+
+    /**
+     * @return the current generation, pass it to {@link #put(Object, Object, long)} after loading the row
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @return a copy of the cached row, or null
+     */
+    Object get(Object id) throws Exception {
+        Object row = rows.get(key(id));
+        return row == null ? null : copy(metadata, row);
+    }
+
+    /**
+     * Cache a copy of a row, unless an invalidation happened since the generation was read.
+     */
+    void put(Object id, Object row, long loadGeneration) throws Exception {
+        Object copy = copy(metadata, row);
+        if (generation.get() == loadGeneration) {
+            rows.put(key(id), copy);
+        }
+    }
+
+    void invalidate(Object id) {
+        generation.incrementAndGet();
+        rows.remove(key(id));
+    }
+
+    /**
+     * Integer and Long ids of the same row are the same key.
+     */
+    static Object key(Object id) {
+        if (id instanceof Integer || id instanceof Long || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        }
+        return id;
+    }
+
+    /**
+     * @return a new object of the model class with the readable and writable columns of the row
+     */
+    static Object copy(EntityMetadata metadata, Object row) throws Exception {
+        Object copy = metadata.getType().getDeclaredConstructor().newInstance();
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if (column.isReadable() && column.isWritable()) {
+                Object value = column.get(row);
+                if (value instanceof Date) {
+                    value = ((Date) value).clone();
+                }
+                column.set(copy, value);
+            }
+        }
+        return copy;
+    }
+
+}
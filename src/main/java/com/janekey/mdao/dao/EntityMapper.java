@@ -0,0 +1,51 @@
+package com.janekey.mdao.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Mapper of a {@link com.janekey.mdao.annotation.Table} model class generated at build time by the
+ * annotation processor of mdao-processor, as the class '&lt;model class&gt;_MdaoMapper' in the package of
+ * the model class. BaseDao uses it instead of reflection when it is on the class path.
+ * Columns are in field declaration order, the same as {@link EntityMetadata#getColumns()}.
+ */
+public interface EntityMapper<T> {
+
+    String getTableName();
+
+    String[] getColumns();
+
+    /**
+     * @return the values of the columns read with the getters, null for columns without a getter
+     */
+    Object[] getValues(T entity);
+
+    /**
+     * @return the INSERT of all columns but id
+     */
+    String getInsertSql();
+
+    /**
+     * @return the UPDATE by id of all columns but id, with id as the last parameter
+     */
+    String getUpdateSql();
+
+    /**
+     * Set the parameters of {@link #getInsertSql()} with the typed setters of the statement.
+     */
+    void bindInsert(PreparedStatement stmt, T entity) throws SQLException;
+
+    /**
+     * Set the parameters of {@link #getUpdateSql()} with the typed setters of the statement.
+     */
+    void bindUpdate(PreparedStatement stmt, T entity) throws SQLException;
+
+    /**
+     * Read the current row. Columns which are null in the row are not set.
+     *
+     * @param indexes result set index of every column, 0 for the columns not in the result set
+     */
+    T readRow(ResultSet rs, int[] indexes) throws SQLException;
+
+}
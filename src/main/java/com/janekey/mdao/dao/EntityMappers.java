@@ -0,0 +1,133 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+import org.apache.log4j.Logger;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Find the generated {@link EntityMapper} of a model class, see mdao-processor.
+ */
+final class EntityMappers {
+
+    private static final Logger LOGGER = Logger.getLogger(EntityMappers.class);
+
+    static final String SUFFIX = "_MdaoMapper";
+
+    // 没有生成的mapper的类
+    private static final Object NONE = new Object();
+
+    private static final ConcurrentHashMap<Class<?>, Object> MAPPERS = new ConcurrentHashMap<Class<?>, Object>();
+
+    private static final ConcurrentHashMap<String, RowMapper<?>> SHAPES =
+            new ConcurrentHashMap<String, RowMapper<?>>();
+
+    private EntityMappers() {
+    }
+
+    /**
+     * @return the generated mapper of the model class, or null to use reflection
+     */
+    @SuppressWarnings("unchecked")
+    static <T> EntityMapper<T> forClass(Class<T> cl) {
+        Object mapper = MAPPERS.get(cl);
+        if (mapper == null) {
+            mapper = load(cl);
+            MAPPERS.putIfAbsent(cl, mapper);
+        }
+        return mapper == NONE ? null : (EntityMapper<T>) mapper;
+    }
+
+    /**
+     * @return the generated mapper of the class of the object, or null to use reflection
+     */
+    @SuppressWarnings("unchecked")
+    static EntityMapper<Object> forObject(Object object) {
+        return (EntityMapper<Object>) forClass(object.getClass());
+    }
+
+    private static Object load(Class<?> cl) {
+        Class<?> mapperClass;
+        try {
+            mapperClass = Class.forName(cl.getName() + SUFFIX, true, cl.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return NONE;
+        } catch (LinkageError e) {
+            LOGGER.error(e.getMessage());
+            return NONE;
+        }
+        try {
+            EntityMapper<?> mapper = (EntityMapper<?>) mapperClass.getDeclaredConstructor().newInstance();
+            // 生成后模型类又修改过时使用反射
+            List<ColumnMetadata> columns = EntityMetadata.forClass(cl).getColumns();
+            String[] names = new String[columns.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = columns.get(i).getColumnName();
+            }
+            if (!Arrays.equals(names, mapper.getColumns())) {
+                LOGGER.error(mapperClass.getName() + " does not match the columns of " + cl.getName());
+                return NONE;
+            }
+            LOGGER.info("use generated mapper " + mapperClass.getName());
+            return mapper;
+        } catch (Exception e) {
+            LOGGER.error("could not use " + mapperClass.getName() + " : " + e.getMessage());
+            return NONE;
+        }
+    }
+
+    /**
+     * Get the row mapper of the model class for the shape of the result set, the generated mapper if
+     * there is one, otherwise {@link BeanRowMapper}.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> rowMapper(Class<T> cl, ResultSetMetaData rsmd) throws SQLException, AnnotaionParseException {
+        EntityMapper<T> mapper = forClass(cl);
+        if (mapper == null) {
+            return BeanRowMapper.forShape(cl, rsmd);
+        }
+        int columnCount = rsmd.getColumnCount();
+        StringBuilder key = new StringBuilder(cl.getName());
+        for (int i = 1; i <= columnCount; i++) {
+            key.append('|').append(rsmd.getColumnLabel(i));
+        }
+        String shape = key.toString();
+        RowMapper<?> rowMapper = SHAPES.get(shape);
+        if (rowMapper == null) {
+            String[] columns = mapper.getColumns();
+            int[] indexes = new int[columns.length];
+            for (int i = 1; i <= columnCount; i++) {
+                int column = Arrays.asList(columns).indexOf(rsmd.getColumnLabel(i));
+                if (column >= 0) {
+                    indexes[column] = i;
+                }
+            }
+            rowMapper = new GeneratedRowMapper<T>(mapper, indexes);
+            RowMapper<?> exist = SHAPES.putIfAbsent(shape, rowMapper);
+            if (exist != null) {
+                rowMapper = exist;
+            }
+        }
+        return (RowMapper<T>) rowMapper;
+    }
+
+    private static final class GeneratedRowMapper<T> implements RowMapper<T> {
+        private final EntityMapper<T> mapper;
+        private final int[] indexes;
+
+        GeneratedRowMapper(EntityMapper<T> mapper, int[] indexes) {
+            this.mapper = mapper;
+            this.indexes = indexes;
+        }
+
+        public T mapRow(ResultSet rs) throws SQLException {
+            return mapper.readRow(rs, indexes);
+        }
+    }
+
+}
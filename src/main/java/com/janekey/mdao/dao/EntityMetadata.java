@@ -0,0 +1,144 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table name, ordered columns, accessors and id column of a {@link Table} model class.
+ * Every class is parsed once and the immutable result is shared by all threads.
+ * Classes can be registered at startup with {@link #register(Class[])}, otherwise
+ * they are parsed on first use.
+ */
+public final class EntityMetadata {
+
+    private static final Logger LOGGER = Logger.getLogger(EntityMetadata.class);
+
+    public static final String ID_COLUMN = "id";
+
+    private static final ConcurrentHashMap<Class<?>, EntityMetadata> REGISTRY =
+            new ConcurrentHashMap<Class<?>, EntityMetadata>();
+
+    private final Class<?> type;
+    private final String tableName;
+    private final List<ColumnMetadata> columns;
+    private final Map<String, ColumnMetadata> columnMap;
+    private final ColumnMetadata idColumn;
+
+    private EntityMetadata(Class<?> type, String tableName, List<ColumnMetadata> columns) {
+        this.type = type;
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(columns);
+        Map<String, ColumnMetadata> map = new HashMap<String, ColumnMetadata>();
+        ColumnMetadata id = null;
+        for (ColumnMetadata column : columns) {
+            map.put(column.getColumnName(), column);
+            if (ID_COLUMN.equals(column.getColumnName())) {
+                id = column;
+            }
+        }
+        this.columnMap = Collections.unmodifiableMap(map);
+        this.idColumn = id;
+    }
+
+    /**
+     * Get the metadata of a model class, parse it if the class is not registered yet.
+     */
+    public static EntityMetadata forClass(Class<?> cl) throws AnnotaionParseException {
+        EntityMetadata metadata = REGISTRY.get(cl);
+        if (metadata == null) {
+            metadata = parse(cl);
+            EntityMetadata exist = REGISTRY.putIfAbsent(cl, metadata);
+            if (exist != null) {
+                metadata = exist;
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Pre-register model classes, e.g. when the application starts.
+     */
+    public static void register(Class<?>... classes) throws AnnotaionParseException {
+        for (Class<?> cl : classes) {
+            forClass(cl);
+        }
+    }
+
+    private static EntityMetadata parse(Class<?> cl) throws AnnotaionParseException {
+        // Get table name annnotation
+        Table table = cl.getAnnotation(Table.class);
+        if (table == null) {
+            throw new AnnotaionParseException("Count not find table annotation in model class");
+        }
+        List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+        for (Field field : cl.getDeclaredFields()) {
+            // Get column annotation
+            Column column = field.getAnnotation(Column.class);
+            if (column != null) {
+                Method getter = findMethod(cl, accessorName("get", field));
+                Method setter = findMethod(cl, accessorName("set", field), field.getType());
+                columns.add(new ColumnMetadata(column.column(), field, getter, setter));
+            }
+        }
+        LOGGER.info("parse model class " + cl.getName() + " for table : " + table.name());
+        return new EntityMetadata(cl, table.name(), columns);
+    }
+
+    private static Method findMethod(Class<?> cl, String name, Class<?>... parameterTypes) {
+        try {
+            return cl.getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            LOGGER.error(e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * If field name is 'name' and prefix is 'get', return 'getName'.
+     */
+    private static String accessorName(String prefix, Field field) {
+        String fieldName = field.getName();
+        return prefix + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Columns in field declaration order.
+     */
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the column mapped to the column name, or null
+     */
+    public ColumnMetadata getColumn(String columnName) {
+        return columnMap.get(columnName);
+    }
+
+    /**
+     * @return the 'id' column, or null if the model class has none
+     */
+    public ColumnMetadata getIdColumn() {
+        return idColumn;
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.janekey.mdao.dao;
+
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * Build INSERT and UPDATE statements of model objects from their {@link EntityMetadata}.
+ */
+final class EntitySql {
+
+    private static final Logger LOGGER = Logger.getLogger(EntitySql.class);
+
+    private EntitySql() {
+    }
+
+    /**
+     * 生成插入语句, 只插入不为null的字段
+     */
+    static String insertSql(List<Object> params, Object object) throws Exception {
+        EntityMetadata metadata = EntityMetadata.forClass(object.getClass());
+        EntityMapper<Object> mapper = EntityMappers.forObject(object);
+        Object[] values = mapper != null ? mapper.getValues(object) : values(metadata, object);
+        int idIndex = idIndex(metadata);
+        if (mapper != null && (idIndex < 0 || values[idIndex] == null) && isAllSet(metadata, values)) {
+            // 生成的mapper中预先生成的语句
+            addValues(params, metadata, values);
+            return mapper.getInsertSql();
+        }
+        StringBuilder sql = new StringBuilder();
+        sql.append("INSERT INTO ").append(metadata.getTableName());
+
+        StringBuilder valueList = new StringBuilder();
+        sql.append(" (");
+        valueList.append(" (");
+        List<ColumnMetadata> columns = metadata.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (values[i] != null) {
+                sql.append(columns.get(i).getColumnName()).append(",");
+                valueList.append("?,");
+                params.add(values[i]);
+            }
+        }
+        sql.deleteCharAt(sql.length() - 1).append(")");
+        valueList.deleteCharAt(valueList.length() - 1).append(")");
+
+        sql.append(" VALUES ").append(valueList);
+        return sql.toString();
+    }
+
+    /**
+     * 生成按id更新的语句, 只更新不为null的字段
+     */
+    static String updateSql(List<Object> params, Object object) throws Exception {
+        EntityMetadata metadata = EntityMetadata.forClass(object.getClass());
+        EntityMapper<Object> mapper = EntityMappers.forObject(object);
+        Object[] values = mapper != null ? mapper.getValues(object) : values(metadata, object);
+        Object[] snapshot = DirtyTracker.getSnapshot(object);
+        if (snapshot != null) {
+            return dirtyUpdateSql(params, metadata, values, snapshot);
+        }
+        int idIndex = idIndex(metadata);
+        Object id = idIndex < 0 ? null : values[idIndex];
+        if (mapper != null && isAllSet(metadata, values)) {
+            addValues(params, metadata, values);
+            params.add(id);
+            return mapper.getUpdateSql();
+        }
+        StringBuilder sql = new StringBuilder();
+        sql.append("UPDATE ").append(metadata.getTableName()).append(" SET ");
+
+        List<ColumnMetadata> columns = metadata.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (values[i] != null && i != idIndex) {
+                sql.append(columns.get(i).getColumnName()).
+                        append(" = ?,");
+                params.add(values[i]);
+            }
+        }
+        sql.deleteCharAt(sql.length() - 1);
+        sql.append(" WHERE id = ? ");
+        params.add(id);
+        return sql.toString();
+    }
+
+    /**
+     * @return the column values of the object in the order of {@link EntityMetadata#getColumns()},
+     * null for the columns without a getter
+     */
+    static Object[] values(Object object) throws Exception {
+        EntityMapper<Object> mapper = EntityMappers.forObject(object);
+        return mapper != null ? mapper.getValues(object) : values(EntityMetadata.forClass(object.getClass()), object);
+    }
+
+    private static Object[] values(EntityMetadata metadata, Object object) {
+        List<ColumnMetadata> columns = metadata.getColumns();
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            ColumnMetadata column = columns.get(i);
+            if (column.isReadable()) {
+                try {
+                    values[i] = column.get(object);
+                } catch (IllegalAccessException e) {
+                    LOGGER.error(e.getMessage());
+                } catch (IllegalArgumentException e) {
+                    LOGGER.error(e.getMessage());
+                } catch (InvocationTargetException e) {
+                    LOGGER.error(e.getMessage());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static int idIndex(EntityMetadata metadata) {
+        return metadata.getColumns().indexOf(metadata.getIdColumn());
+    }
+
+    /**
+     * @return whether all columns but id have a value, so the statements of the generated mapper fit
+     */
+    private static boolean isAllSet(EntityMetadata metadata, Object[] values) {
+        int idIndex = idIndex(metadata);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null && i != idIndex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addValues(List<Object> params, EntityMetadata metadata, Object[] values) {
+        int idIndex = idIndex(metadata);
+        for (int i = 0; i < values.length; i++) {
+            if (i != idIndex) {
+                params.add(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Rewrite a single row INSERT of {@link #insertSql(List, Object)} to insert rows rows,
+     * e.g. "INSERT INTO t (a,b) VALUES (?,?),(?,?)".
+     */
+    static String multiRowInsertSql(String insertSql, int columnCount, int rows) {
+        StringBuilder row = new StringBuilder(",(");
+        for (int i = 0; i < columnCount; i++) {
+            row.append("?,");
+        }
+        row.setCharAt(row.length() - 1, ')');
+        StringBuilder sql = new StringBuilder(insertSql.length() + row.length() * rows);
+        sql.append(insertSql);
+        for (int i = 1; i < rows; i++) {
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 生成只更新修改过的字段的语句, 包括改为null的字段
+     * @return 更新语句, 没有修改过的字段时为null
+     */
+    private static String dirtyUpdateSql(List<Object> params, EntityMetadata metadata, Object[] values,
+                                         Object[] snapshot) {
+        int idIndex = idIndex(metadata);
+        StringBuilder sql = new StringBuilder();
+        sql.append("UPDATE ").append(metadata.getTableName()).append(" SET ");
+        List<ColumnMetadata> columns = metadata.getColumns();
+        boolean changed = false;
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnMetadata column = columns.get(i);
+            if (i == idIndex || !column.isReadable()) {
+                continue;
+            }
+            if (DirtyTracker.isChanged(snapshot[i], values[i])) {
+                sql.append(column.getColumnName()).append(" = ?,");
+                params.add(values[i]);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return null;
+        }
+        sql.deleteCharAt(sql.length() - 1);
+        sql.append(" WHERE id = ? ");
+        params.add(idIndex < 0 ? null : values[idIndex]);
+        return sql.toString();
+    }
+
+}
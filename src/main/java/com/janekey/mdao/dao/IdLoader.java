@@ -0,0 +1,172 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+import com.janekey.mdao.connection.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the rows of a model class by many ids for BaseDao.findByIds.
+ * The ids are converted to the type of the id column and deduplicated. Rows of a
+ * {@link com.janekey.mdao.annotation.Cache} model class are taken from the entity cache first.
+ * The other ids are read with 'SELECT * FROM table WHERE id IN (?, ...)' in chunks of chunkSize ids.
+ * A shorter last chunk gets the next power of two of placeholders, filled up with its last id, so
+ * the pool's statement cache only sees a few different statements. Outside a transaction the chunks
+ * may run at the same time, at most '&lt;pool&gt;.maxconn' at a time on each pool they read from.
+ * Inside an operation of {@link AsyncBaseDao} they run one after another on its thread.
+ */
+final class IdLoader {
+
+    private IdLoader() {
+    }
+
+    /**
+     * @return the found rows by the ids as given, in the order of the ids
+     * @throws IllegalArgumentException if an id can not be converted to the type of the id column
+     */
+    static <T> Map<Object, T> load(BaseDao dao, Class<T> cl, Collection<?> ids, int chunkSize, boolean parallel)
+            throws Exception {
+        EntityMetadata metadata = EntityMetadata.forClass(cl);
+        ColumnMetadata idColumn = metadata.getIdColumn();
+        if (idColumn == null) {
+            throw new AnnotaionParseException("Could not find id column in model class " + cl.getName());
+        }
+        // 规范化的id -> 第一次出现时的id
+        Map<Object, Object> distinct = new LinkedHashMap<Object, Object>();
+        Map<Object, Object> given = new HashMap<Object, Object>();
+        for (Object id : ids) {
+            if (id == null) {
+                continue;
+            }
+            Object converted = convert(id, idColumn.getType());
+            Object key = EntityCache.key(converted);
+            if (!distinct.containsKey(key)) {
+                distinct.put(key, converted);
+                given.put(key, id);
+            }
+        }
+        Map<Object, T> rows = new HashMap<Object, T>();
+        boolean inTransaction = Transaction.current() != null;
+        EntityCache cache = inTransaction ? null : EntityCache.forClass(cl);
+        long generation = cache == null ? 0 : cache.generation();
+        List<Object> missing = new ArrayList<Object>(distinct.size());
+        for (Object id : distinct.values()) {
+            Object cached = cache == null ? null : cache.get(id);
+            if (cached != null) {
+                if (DirtyTracker.isTracked(cl)) {
+                    DirtyTracker.snapshot(cached);
+                }
+                rows.put(EntityCache.key(id), cl.cast(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+
+        // 缓存的行从写连接池读取, 副本可能落后
+        final boolean concurrent = parallel && !inTransaction;
+        List<List<?>> chunks = cache == null ? query(dao, cl, metadata, missing, chunkSize, concurrent)
+                : BaseDao.readPrimary(() -> query(dao, cl, metadata, missing, chunkSize, concurrent));
+        for (List<?> chunk : chunks) {
+            for (Object row : chunk) {
+                Object id = idColumn.get(row);
+                rows.put(EntityCache.key(id), cl.cast(row));
+                if (cache != null) {
+                    cache.put(id, row, generation);
+                }
+            }
+        }
+
+        Map<Object, T> result = new LinkedHashMap<Object, T>();
+        for (Map.Entry<Object, Object> id : distinct.entrySet()) {
+            T row = rows.get(id.getKey());
+            if (row != null) {
+                result.put(given.get(id.getKey()), row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the id as the type of the id column, so the found rows match it
+     */
+    static Object convert(Object id, Class<?> type) {
+        if (type.isInstance(id)) {
+            return id;
+        }
+        try {
+            if (type == String.class) {
+                return id.toString();
+            }
+            if (id instanceof Number || id instanceof String) {
+                String value = id.toString().trim();
+                if (type == Long.class || type == long.class) {
+                    return Long.valueOf(value);
+                } else if (type == Integer.class || type == int.class) {
+                    return Integer.valueOf(value);
+                } else if (type == Short.class || type == short.class) {
+                    return Short.valueOf(value);
+                } else if (type == Byte.class || type == byte.class) {
+                    return Byte.valueOf(value);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("id " + id + " is not a " + type.getSimpleName(), e);
+        }
+        throw new IllegalArgumentException("id " + id + " of " + id.getClass().getName()
+                + " does not match the id column type " + type.getName());
+    }
+
+    private static List<List<?>> query(final BaseDao dao, final Class<?> cl, EntityMetadata metadata,
+                                       List<Object> ids, int chunkSize, boolean parallel) {
+        String select = "SELECT * FROM " + metadata.getTableName() + " WHERE " + EntityMetadata.ID_COLUMN + " IN (";
+        List<String> sqls = new ArrayList<String>();
+        List<Object[]> params = new ArrayList<Object[]>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            int n = Math.min(chunkSize, ids.size() - from);
+            int size = n == chunkSize ? n : Math.min(chunkSize, Math.max(1, Integer.highestOneBit(n - 1) << 1));
+            Object[] chunk = new Object[size];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = ids.get(from + Math.min(i, n - 1));
+            }
+            StringBuilder sql = new StringBuilder(select.length() + 3 * chunk.length).append(select);
+            for (int i = 0; i < chunk.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sqls.add(sql.append(')').toString());
+            params.add(chunk);
+        }
+
+        List<List<?>> results = new ArrayList<List<?>>(sqls.size());
+        // 在异步操作中时块在当前线程查询, 等待同一连接池的执行位置可能永远等不到
+        if (!parallel || sqls.size() < 2 || AsyncDispatcher.inSlot()) {
+            for (int i = 0; i < sqls.size(); i++) {
+                results.add(dao.selectList(sqls.get(i), cl, params.get(i)));
+            }
+            return results;
+        }
+        String writePool = dao.getWritePool();
+        Executor executor = dao instanceof AsyncBaseDao
+                ? ((AsyncBaseDao) dao).getExecutor() : AsyncBaseDao.getDefaultExecutor();
+        List<CompletableFuture<List<?>>> futures = new ArrayList<CompletableFuture<List<?>>>(sqls.size());
+        for (int i = 0; i < sqls.size(); i++) {
+            final String sql = sqls.get(i);
+            final Object[] chunk = params.get(i);
+            // 每块在其查询的连接池排队, 填充缓存时为写连接池, 否则为选出的副本
+            String readPool = dao.getReadPool();
+            futures.add(AsyncDispatcher.forPool(readPool).submit(executor, BaseDao.inheritReadPrimary(
+                    BaseDao.onReadPool(writePool, readPool, () -> (List<?>) dao.selectList(sql, cl, chunk)))));
+        }
+        for (CompletableFuture<List<?>> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.connection.PoolExhaustedException;
+import com.janekey.mdao.connection.UncheckedPoolExhaustedException;
+import org.apache.log4j.Logger;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Group commit of concurrent executeInsert(Object) calls of a dao, see BaseDao.setInsertCoalescing.
+ * The first caller of a batch waits up to the linger time, or until the batch has maxBatchSize rows,
+ * then inserts the rows of all callers with the same pool, table and columns on one connection in
+ * one transaction. When the batch fails on a row its rows are inserted one by one, so every caller
+ * gets its own id, or 0 when its own row fails. When it fails on the pool or the connection all
+ * callers fail at once, with an UncheckedPoolExhaustedException or 0, instead of checking out a
+ * connection per row.
+ */
+final class InsertCoalescer {
+
+    private static final Logger LOGGER = Logger.getLogger(InsertCoalescer.class);
+
+    private final BaseDao dao;
+    private final long lingerNanos;
+    private final int maxBatchSize;
+
+    // 连接池名和插入语句 -> 还在接收行的批次
+    private final Map<String, Batch> open = new HashMap<String, Batch>();
+
+    InsertCoalescer(BaseDao dao, long lingerMillis, int maxBatchSize) {
+        this.dao = dao;
+        this.lingerNanos = lingerMillis * 1000000L;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * @return the id of the inserted object, 0 if it failed
+     */
+    int insert(String poolName, Object object) throws Exception {
+        String key = poolName + '\n' + EntitySql.insertSql(new ArrayList<Object>(), object);
+        Batch batch;
+        int index;
+        synchronized (this) {
+            batch = open.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                open.put(key, batch);
+            }
+            index = batch.objects.size();
+            batch.objects.add(object);
+            if (batch.objects.size() >= maxBatchSize) {
+                open.remove(key);
+                batch.close();
+            }
+        }
+        if (index == 0) {
+            // 第一个调用者执行整个批次
+            batch.awaitClose(lingerNanos);
+            synchronized (this) {
+                if (open.get(key) == batch) {
+                    open.remove(key);
+                }
+            }
+            int[] ids = new int[batch.objects.size()];
+            RuntimeException failure = null;
+            try {
+                ids = execute(batch.objects);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                batch.complete(ids, failure);
+            }
+        }
+        return batch.await(index);
+    }
+
+    private int[] execute(List<Object> objects) {
+        if (objects.size() == 1) {
+            return new int[]{dao.insertOne(objects.get(0))};
+        }
+        try {
+            return dao.insertBatch(objects);
+        } catch (Exception e) {
+            if (isConnectionFailure(e)) {
+                BaseDao.failFast(e);
+                LOGGER.error("coalesced insert of " + objects.size() + " rows failed: " + e);
+                return new int[objects.size()];
+            }
+            LOGGER.error("coalesced insert of " + objects.size() + " rows failed, inserting them one by one: " + e);
+        }
+        int[] ids = new int[objects.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dao.insertOne(objects.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * @return true if the error is not caused by a row but by the pool or the connection, retrying
+     * the rows one by one would only wait for the pool once per row
+     */
+    static boolean isConnectionFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PoolExhaustedException || cause instanceof UncheckedPoolExhaustedException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                // SQLState 08: connection exception
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The rows of one group commit. Callers are released when the first caller completes it.
+     */
+    private static final class Batch {
+        final List<Object> objects = new ArrayList<Object>();
+        private boolean closed;
+        private int[] ids;
+        private RuntimeException failure;
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        synchronized void awaitClose(long nanos) {
+            long deadline = System.nanoTime() + nanos;
+            boolean interrupted = false;
+            long remaining;
+            while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    wait(remaining / 1000000L, (int) (remaining % 1000000L));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized void complete(int[] ids, RuntimeException failure) {
+            this.ids = ids;
+            this.failure = failure;
+            notifyAll();
+        }
+
+        synchronized int await(int index) {
+            boolean interrupted = false;
+            while (ids == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // 第一个调用者一定会完成批次
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return ids[index];
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+import com.janekey.mdao.connection.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Pages of a table in id order, each page read with 'WHERE id &gt; last id ORDER BY id LIMIT size'
+ * instead of an OFFSET, so every page costs the same. Created by BaseDao.pages.
+ * With {@link #prefetch(boolean)} the next page is read on the async executor while the caller
+ * works on the current one. All pages are read from the read pool of the dao when the pager was
+ * created. A failed read throws IllegalStateException, or UncheckedPoolExhaustedException, from
+ * hasNext or next instead of ending the traversal; calling hasNext again retries the page.
+ * Not thread safe.
+ */
+public final class KeysetPager<T> implements Iterator<List<T>>, Iterable<List<T>> {
+
+    private final BaseDao dao;
+    private final String pool;
+    private final Class<T> cl;
+    private final ColumnMetadata idColumn;
+    private final int pageSize;
+    private final String firstSql;
+    private final String nextSql;
+    private final Object[] params;
+    private Object lastKey;
+    private boolean prefetch;
+    private List<T> page;
+    private CompletableFuture<List<T>> nextPage;
+    private boolean done;
+
+    KeysetPager(BaseDao dao, Class<T> cl, int pageSize, String where, Object[] params) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size " + pageSize);
+        }
+        this.dao = dao;
+        this.pool = dao.getReadPool();
+        this.cl = cl;
+        this.pageSize = pageSize;
+        this.params = params == null ? new Object[0] : params.clone();
+        String select;
+        try {
+            EntityMetadata metadata = EntityMetadata.forClass(cl);
+            idColumn = metadata.getIdColumn();
+            if (idColumn == null || !idColumn.isReadable()) {
+                throw new AnnotaionParseException("Count not find readable id column in model class");
+            }
+            select = "SELECT * FROM " + metadata.getTableName();
+        } catch (AnnotaionParseException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        String filter = where == null || where.trim().length() == 0 ? null : "(" + where + ")";
+        String order = " ORDER BY " + EntityMetadata.ID_COLUMN + " LIMIT ?";
+        this.firstSql = select + (filter == null ? "" : " WHERE " + filter) + order;
+        this.nextSql = select + " WHERE " + (filter == null ? "" : filter + " AND ")
+                + EntityMetadata.ID_COLUMN + " > ?" + order;
+    }
+
+    /**
+     * Start after the id, to resume from {@link #getLastKey()} of an earlier traversal.
+     */
+    public KeysetPager<T> startAfter(Object id) {
+        this.lastKey = id;
+        return this;
+    }
+
+    /**
+     * Read the next page in the background while the current one is processed.
+     * Ignored in a transaction, whose connection belongs to the calling thread.
+     */
+    public KeysetPager<T> prefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /**
+     * @return the id of the last row returned, null before the first page
+     */
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    public Iterator<List<T>> iterator() {
+        return this;
+    }
+
+    public boolean hasNext() {
+        if (page == null && !done) {
+            CompletableFuture<List<T>> prefetched = nextPage;
+            nextPage = null;
+            if (prefetched != null) {
+                try {
+                    page = prefetched.join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+            } else {
+                page = fetch(lastKey);
+            }
+            if (page.isEmpty()) {
+                done = true;
+            }
+        }
+        return !done;
+    }
+
+    public List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<T> current = page;
+        page = null;
+        try {
+            lastKey = idColumn.get(current.get(current.size() - 1));
+        } catch (Exception e) {
+            done = true;
+            throw new IllegalStateException("could not read the id of the last row", e);
+        }
+        if (current.size() < pageSize) {
+            // 最后一页
+            done = true;
+        } else if (prefetch && Transaction.current() == null) {
+            final Object key = lastKey;
+            nextPage = CompletableFuture.supplyAsync(() -> fetch(key), AsyncBaseDao.getDefaultExecutor());
+        }
+        return current;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> fetch(Object afterKey) {
+        List<Object> args = new ArrayList<Object>(params.length + 2);
+        Collections.addAll(args, params);
+        if (afterKey != null) {
+            args.add(afterKey);
+        }
+        args.add(pageSize);
+        try {
+            return (List<T>) dao.queryList(pool, afterKey == null ? firstSql : nextSql, cl, args.toArray());
+        } catch (Exception e) {
+            BaseDao.failFast(e);
+            throw new IllegalStateException("could not read the page after id " + afterKey, e);
+        }
+    }
+
+}
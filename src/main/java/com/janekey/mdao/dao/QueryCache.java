@@ -0,0 +1,334 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.cache.CacheStats;
+import com.janekey.mdao.cache.LruCache;
+import com.janekey.mdao.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Results of executeQuery and selectCount by pool, SQL text and parameter values.
+ * A query is cached when it is run with BaseDao.executeQueryCached or selectCountCached, or when its
+ * SQL matches a pattern added with {@link #cache(String, long)}.
+ * Every entry is tagged with the tables of its SQL. A write through BaseDao bumps the generation of
+ * the tables it writes, and an entry read before the write is dropped on its next lookup; a write
+ * whose tables are not found drops all entries. Writes by other processes are only seen after the ttl.
+ * The cache is bounded by the estimated bytes of the results, see {@link #setMaxBytes(long)}.
+ */
+public final class QueryCache {
+
+    private static final int MAX_SQL = 1000;
+
+    private static volatile long defaultTtl = 60000;
+
+    private static final LruCache<Key, Entry> ENTRIES = new LruCache<Key, Entry>(32L * 1024 * 1024, 0) {
+        protected long weigh(Key key, Entry entry) {
+            return key.bytes() + entry.bytes;
+        }
+
+        protected boolean isStale(Entry entry) {
+            return !isCurrent(entry);
+        }
+    };
+
+    private static final ConcurrentHashMap<String, AtomicLong> TABLE_GENERATIONS =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    // 无法确定表的写操作使所有条目失效
+    private static final AtomicLong GLOBAL_GENERATION = new AtomicLong();
+
+    private static final List<TtlPattern> PATTERNS = new CopyOnWriteArrayList<TtlPattern>();
+
+    private static final ConcurrentHashMap<String, Long> SQL_TTLS = new ConcurrentHashMap<String, Long>();
+
+    static {
+        Metrics.registerMBean("QueryCache", "default", ENTRIES.getStats());
+    }
+
+    private QueryCache() {
+    }
+
+    /**
+     * Cache the queries whose SQL matches the regular expression.
+     *
+     * @param ttl 以毫秒计的有效时间, 0 为只在写入时失效
+     */
+    public static void cache(String sqlRegex, long ttl) {
+        PATTERNS.add(new TtlPattern(Pattern.compile(sqlRegex), ttl));
+        SQL_TTLS.clear();
+    }
+
+    /**
+     * The ttl of the executeQueryCached and selectCountCached calls without one, 60 seconds by default.
+     */
+    public static void setDefaultTtl(long ttl) {
+        defaultTtl = ttl;
+    }
+
+    public static long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    /**
+     * Bound the cache by the estimated size of keys and results, 32MB by default.
+     */
+    public static void setMaxBytes(long maxBytes) {
+        ENTRIES.setMaxWeight(maxBytes);
+    }
+
+    public static CacheStats getStats() {
+        return ENTRIES.getStats();
+    }
+
+    /**
+     * Drop the entries reading the table, after it was changed outside BaseDao.
+     */
+    public static void invalidate(String table) {
+        generation(table.toLowerCase()).incrementAndGet();
+    }
+
+    public static void clear() {
+        GLOBAL_GENERATION.incrementAndGet();
+        ENTRIES.clear();
+    }
+
+    /**
+     * @return the ttl of the first pattern matching the SQL, or -1 when it is not cached
+     */
+    static long getTtl(String sql) {
+        if (PATTERNS.isEmpty()) {
+            return -1;
+        }
+        Long ttl = SQL_TTLS.get(sql);
+        if (ttl == null) {
+            ttl = -1L;
+            for (TtlPattern pattern : PATTERNS) {
+                if (pattern.pattern.matcher(sql).find()) {
+                    ttl = pattern.ttl;
+                    break;
+                }
+            }
+            if (SQL_TTLS.size() < MAX_SQL) {
+                SQL_TTLS.put(sql, ttl);
+            }
+        }
+        return ttl;
+    }
+
+    /**
+     * Look the query up. Take the lookup before running the query, so a write during the query
+     * keeps its result out of the cache.
+     *
+     * @param pool the write pool of the dao, the same query on other pools, e.g. other shards, is another entry
+     */
+    static Lookup lookup(String pool, String sql, Object[] params) {
+        Key key = new Key(pool, sql, params == null ? new Object[0] : params.clone());
+        String[] tables = SqlTables.tablesOf(sql);
+        long[] generations = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            generations[i] = generation(tables[i]).get();
+        }
+        Lookup lookup = new Lookup(key, tables, generations, GLOBAL_GENERATION.get());
+        Entry entry = ENTRIES.get(key);
+        if (entry != null) {
+            lookup.value = entry.value;
+        }
+        return lookup;
+    }
+
+    /**
+     * Invalidate the tables written by the SQL, or all entries when none is found.
+     */
+    static void written(String sql) {
+        String[] tables = SqlTables.tablesOf(sql);
+        if (tables.length == 0) {
+            GLOBAL_GENERATION.incrementAndGet();
+            return;
+        }
+        for (String table : tables) {
+            generation(table).incrementAndGet();
+        }
+    }
+
+    private static AtomicLong generation(String table) {
+        AtomicLong generation = TABLE_GENERATIONS.get(table);
+        if (generation == null) {
+            AtomicLong created = new AtomicLong();
+            generation = TABLE_GENERATIONS.putIfAbsent(table, created);
+            if (generation == null) {
+                generation = created;
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * @return true if no table of the entry was written since its query was looked up
+     */
+    private static boolean isCurrent(Entry entry) {
+        if (entry.globalGeneration != GLOBAL_GENERATION.get()) {
+            return false;
+        }
+        for (int i = 0; i < entry.tables.length; i++) {
+            if (entry.generations[i] != generation(entry.tables[i]).get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A cached result is copied in and out, callers may change the lists and maps they get.
+     */
+    @SuppressWarnings("unchecked")
+    static Object copy(Object value) {
+        if (!(value instanceof List)) {
+            return value;
+        }
+        List<Map<String, Object>> rows = (List<Map<String, Object>>) value;
+        List<Map<String, Object>> copy = new ArrayList<Map<String, Object>>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Map<String, Object> rowCopy = new HashMap<String, Object>(row);
+            for (Map.Entry<String, Object> column : rowCopy.entrySet()) {
+                if (column.getValue() instanceof Date) {
+                    column.setValue(((Date) column.getValue()).clone());
+                }
+            }
+            copy.add(rowCopy);
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long estimateBytes(Object value) {
+        if (!(value instanceof List)) {
+            return 16;
+        }
+        long bytes = 16;
+        for (Map<String, Object> row : (List<Map<String, Object>>) value) {
+            bytes += 48;
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                bytes += 32 + estimateValue(column.getKey()) + estimateValue(column.getValue());
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimateValue(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        return 24;
+    }
+
+    static final class Lookup {
+        private final Key key;
+        private final String[] tables;
+        private final long[] generations;
+        private final long globalGeneration;
+        private Object value;
+
+        Lookup(Key key, String[] tables, long[] generations, long globalGeneration) {
+            this.key = key;
+            this.tables = tables;
+            this.generations = generations;
+            this.globalGeneration = globalGeneration;
+        }
+
+        /**
+         * @return a copy of the cached result, or null
+         */
+        Object get() {
+            return value == null ? null : copy(value);
+        }
+
+        /**
+         * Cache the result with the table generations of the lookup.
+         *
+         * @param ttl 以毫秒计的有效时间, 0 为只在写入时失效
+         */
+        void put(Object result, long ttl) {
+            Entry entry = new Entry(copy(result), tables, generations, globalGeneration);
+            if (isCurrent(entry)) {
+                ENTRIES.put(key, entry, ttl);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final String[] tables;
+        final long[] generations;
+        final long globalGeneration;
+        final long bytes;
+
+        Entry(Object value, String[] tables, long[] generations, long globalGeneration) {
+            this.value = value;
+            this.tables = tables;
+            this.generations = generations;
+            this.globalGeneration = globalGeneration;
+            this.bytes = estimateBytes(value) + 16L * tables.length;
+        }
+    }
+
+    private static final class Key {
+        final String pool;
+        final String sql;
+        final Object[] params;
+        final int hash;
+
+        Key(String pool, String sql, Object[] params) {
+            this.pool = pool;
+            this.sql = sql;
+            this.params = params;
+            this.hash = (pool.hashCode() * 31 + sql.hashCode()) * 31 + Arrays.hashCode(params);
+        }
+
+        long bytes() {
+            long bytes = 64 + 2L * sql.length() + 2L * pool.length();
+            for (Object param : params) {
+                bytes += 16 + estimateValue(param);
+            }
+            return bytes;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash && pool.equals(key.pool) && sql.equals(key.sql)
+                    && Arrays.equals(params, key.params);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class TtlPattern {
+        final Pattern pattern;
+        final long ttl;
+
+        TtlPattern(Pattern pattern, long ttl) {
+            this.pattern = pattern;
+            this.ttl = ttl;
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.janekey.mdao.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Handle the rows of a streaming query one by one, see {@link BaseDao#forEach(String, RowCallback, Object...)}.
+ * Implementations must not move the cursor or keep the result set.
+ */
+public interface RowCallback {
+
+    void processRow(ResultSet rs) throws SQLException;
+
+}
@@ -0,0 +1,14 @@
+package com.janekey.mdao.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Map the current row of a result set to an object.
+ * Implementations must not move the cursor.
+ */
+public interface RowMapper<T> {
+
+    T mapRow(ResultSet rs) throws SQLException;
+
+}
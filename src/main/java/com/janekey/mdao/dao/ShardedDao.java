@@ -0,0 +1,461 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.AnnotaionParseException;
+import com.janekey.mdao.connection.DBConnectionManager;
+import com.janekey.mdao.connection.ShardRule;
+import com.janekey.mdao.connection.Transaction;
+import org.apache.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * A dao for tables sharded over several pools by a 'shard.&lt;table&gt;.*' rule, see {@link ShardRule}.
+ * executeInsert(Object), updateObject, insertAll, updateAll and findById by the shard key go to the
+ * shard of the object; the *OnShard methods go to the shard of the given key. A sharded object
+ * without a valid shard key, e.g. a null auto increment id, is not written and gets 0.
+ * A transaction only covers one shard: run inTransaction inside {@link #onShard(String, Supplier)}.
+ * Writes to a shard inside a transaction of another pool throw IllegalStateException, as they
+ * could not be rolled back with it.
+ * selectList of a sharded model class and selectCount of a sharded table run on all shards at the
+ * same time and merge the results, see {@link #selectListAll(String, Class, Comparator, Object...)}.
+ * Statements of tables which are not sharded use the write pool as usual.
+ */
+public class ShardedDao extends AsyncBaseDao {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardedDao.class);
+
+    // 当前线程正在使用的分片连接池
+    private final ThreadLocal<String> shard = new ThreadLocal<String>();
+
+    public ShardedDao() {
+        super();
+    }
+
+    /**
+     * @param executor 并行查询各分片的线程池
+     */
+    public ShardedDao(ExecutorService executor) {
+        super(executor);
+    }
+
+    /**
+     * @return the pool of the current shard, or the write pool outside {@link #onShard(String, Supplier)}
+     */
+    protected String getWritePool() {
+        String poolName = shard.get();
+        return poolName != null ? poolName : super.getWritePool();
+    }
+
+    /**
+     * Run the work with all statements of this dao going to the pool.
+     */
+    protected <T> T onShard(String poolName, Supplier<T> work) {
+        String previous = shard.get();
+        shard.set(poolName);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                shard.remove();
+            } else {
+                shard.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the sharding rule of the model class, or null if its table is not sharded
+     */
+    protected static ShardRule getShardRule(Class<?> cl) throws AnnotaionParseException {
+        return DBConnectionManager.getInstance().getShardRule(EntityMetadata.forClass(cl).getTableName());
+    }
+
+    /**
+     * @return the pool of the shard holding the key, or the write pool if the model class is not sharded
+     */
+    protected String getShardPool(Class<?> cl, Object shardKey) {
+        try {
+            ShardRule rule = getShardRule(cl);
+            if (rule != null) {
+                return rule.getPool(shardKey);
+            }
+        } catch (AnnotaionParseException e) {
+            LOGGER.error(e.getMessage());
+        }
+        return getWritePool();
+    }
+
+    protected <T> List<T> selectListOnShard(Class<T> cl, Object shardKey, String sql, Object ... object) {
+        return onShard(getShardPool(cl, shardKey), () -> castList(super.selectList(sql, cl, object)));
+    }
+
+    protected int selectCountOnShard(Class<?> cl, Object shardKey, String sql, Object ... object) {
+        return onShard(getShardPool(cl, shardKey), () -> super.selectCount(sql, object));
+    }
+
+    protected List<Map<String, Object>> executeQueryOnShard(Class<?> cl, Object shardKey, String sql, Object ... object) {
+        return onShard(getShardPool(cl, shardKey), () -> super.executeQuery(sql, object));
+    }
+
+    protected int executeUpdateOnShard(Class<?> cl, Object shardKey, String sql, Object ... object) {
+        String poolName = getShardPool(cl, shardKey);
+        checkTransaction(poolName);
+        return onShard(poolName, () -> super.executeUpdate(sql, object));
+    }
+
+    protected int executeInsert(Object object) {
+        String poolName;
+        try {
+            poolName = shardOf(object);
+        } catch (SQLException e) {
+            LOGGER.error(e.getMessage());
+            return 0;
+        }
+        if (poolName == null) {
+            return super.executeInsert(object);
+        }
+        checkTransaction(poolName);
+        return onShard(poolName, () -> super.executeInsert(object));
+    }
+
+    protected int updateObject(Object object) {
+        String poolName;
+        try {
+            poolName = shardOf(object);
+        } catch (SQLException e) {
+            LOGGER.error(e.getMessage());
+            return 0;
+        }
+        if (poolName == null) {
+            return super.updateObject(object);
+        }
+        checkTransaction(poolName);
+        return onShard(poolName, () -> super.updateObject(object));
+    }
+
+    /**
+     * 分片键为id时只查询id所在的分片, 否则查询所有分片
+     */
+    protected <T> T findById(Class<T> cl, Object id) {
+        try {
+            ShardRule rule = shard.get() == null ? getShardRule(cl) : null;
+            if (rule != null && EntityMetadata.ID_COLUMN.equals(rule.getKeyColumn())) {
+                return onShard(rule.getPool(id), () -> super.findById(cl, id));
+            }
+        } catch (AnnotaionParseException e) {
+            LOGGER.error(e.getMessage());
+        }
+        return super.findById(cl, id);
+    }
+
+    /**
+     * 每个分片的object在该分片的一个事务中插入
+     */
+    protected int[] insertAll(List<?> objects) {
+        Map<String, List<Integer>> shards;
+        try {
+            shards = partition(objects);
+        } catch (SQLException e) {
+            LOGGER.error(e.getMessage());
+            return new int[objects.size()];
+        }
+        if (shards == null) {
+            return super.insertAll(objects);
+        }
+        for (String poolName : shards.keySet()) {
+            checkTransaction(poolName);
+        }
+        int[] ids = new int[objects.size()];
+        for (Map.Entry<String, List<Integer>> entry : shards.entrySet()) {
+            List<Object> part = subList(objects, entry.getValue());
+            int[] partIds = onShard(entry.getKey(), () -> super.insertAll(part));
+            for (int i = 0; i < partIds.length; i++) {
+                ids[entry.getValue().get(i)] = partIds[i];
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 每个分片的object在该分片的一个事务中更新
+     */
+    protected int[] updateAll(List<?> objects) {
+        Map<String, List<Integer>> shards;
+        try {
+            shards = partition(objects);
+        } catch (SQLException e) {
+            LOGGER.error(e.getMessage());
+            return new int[objects.size()];
+        }
+        if (shards == null) {
+            return super.updateAll(objects);
+        }
+        for (String poolName : shards.keySet()) {
+            checkTransaction(poolName);
+        }
+        int[] updates = new int[objects.size()];
+        for (Map.Entry<String, List<Integer>> entry : shards.entrySet()) {
+            List<Object> part = subList(objects, entry.getValue());
+            int[] partUpdates = onShard(entry.getKey(), () -> super.updateAll(part));
+            for (int i = 0; i < partUpdates.length; i++) {
+                updates[entry.getValue().get(i)] = partUpdates[i];
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * 分片的模型类查询所有分片, 按分片顺序合并结果
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    protected List selectList(String sql, Class cl, Object ... object) {
+        ShardRule rule = null;
+        try {
+            rule = shard.get() == null ? getShardRule(cl) : null;
+        } catch (AnnotaionParseException e) {
+            LOGGER.error(e.getMessage());
+        }
+        if (rule == null) {
+            return super.selectList(sql, cl, object);
+        }
+        return selectListAll(rule, sql, cl, null, object);
+    }
+
+    /**
+     * Run the query on all shards of the model class at the same time and merge the results.
+     *
+     * @param order 各分片的结果已按此顺序排序时 (例如 ORDER BY), 合并为一个有序的结果; 为null时按分片顺序连接
+     */
+    protected <T> List<T> selectListAll(String sql, Class<T> cl, Comparator<? super T> order, Object ... object) {
+        try {
+            ShardRule rule = getShardRule(cl);
+            if (rule != null) {
+                return selectListAll(rule, sql, cl, order, object);
+            }
+        } catch (AnnotaionParseException e) {
+            LOGGER.error(e.getMessage());
+        }
+        return castList(super.selectList(sql, cl, object));
+    }
+
+    private <T> List<T> selectListAll(ShardRule rule, String sql, Class<T> cl, Comparator<? super T> order,
+                                      Object[] object) {
+        List<List<T>> results = scatter(rule, () -> castList(super.selectList(sql, cl, object)));
+        return order == null ? concat(results) : merge(results, order);
+    }
+
+    /**
+     * 分片的模型类只能在 {@link #onShard(String, Supplier)} 中按分片分页, 各分片的页不按id连续
+     */
+    protected <T> KeysetPager<T> pages(Class<T> cl, int pageSize, String where, Object ... object) {
+        ShardRule rule = null;
+        try {
+            rule = shard.get() == null ? getShardRule(cl) : null;
+        } catch (AnnotaionParseException e) {
+            LOGGER.error(e.getMessage());
+        }
+        if (rule != null) {
+            throw new UnsupportedOperationException("keyset pages of the sharded table " + rule.getTable()
+                    + " must be created inside onShard, one shard at a time");
+        }
+        return super.pages(cl, pageSize, where, object);
+    }
+
+    /**
+     * 查询分片的表时查询所有分片并求和
+     */
+    protected int selectCount(String sql, Object ... object) {
+        ShardRule rule = shard.get() == null ? shardRuleOf(sql) : null;
+        if (rule == null) {
+            return super.selectCount(sql, object);
+        }
+        int count = 0;
+        for (Integer shardCount : scatter(rule, () -> super.selectCount(sql, object))) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    /**
+     * Run the work on every shard of the rule, at most '&lt;pool&gt;.maxconn' at a time on the pool
+     * each shard reads from.
+     * Inside an async operation the shards are queried one after another on the current thread, the
+     * operation holds a slot the shard queries could wait for forever.
+     *
+     * @return the results in the order of the pools of the rule
+     */
+    private <T> List<T> scatter(ShardRule rule, Supplier<T> work) {
+        String[] pools = rule.getPools();
+        if (AsyncDispatcher.inSlot()) {
+            List<T> results = new ArrayList<T>(pools.length);
+            for (String poolName : pools) {
+                results.add(onShard(poolName, work));
+            }
+            return results;
+        }
+        DBConnectionManager connMgr = DBConnectionManager.getInstance();
+        List<CompletableFuture<T>> futures = new ArrayList<CompletableFuture<T>>(pools.length);
+        for (String poolName : pools) {
+            // 在分片实际读取的连接池排队
+            String readPool = isReadingPrimary() ? poolName : connMgr.getReadPool(poolName);
+            futures.add(AsyncDispatcher.forPool(readPool).submit(getExecutor(), inheritReadPrimary(
+                    onReadPool(poolName, readPool, () -> onShard(poolName, work)))));
+        }
+        List<T> results = new ArrayList<T>(pools.length);
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                failFast(e);
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 其它连接池的事务不包含该分片的写操作, 不能随事务回滚
+     */
+    private static void checkTransaction(String poolName) {
+        Transaction tx = Transaction.current();
+        if (tx != null && !tx.getPoolName().equals(poolName)) {
+            throw new IllegalStateException("write to shard " + poolName + " inside a transaction of pool "
+                    + tx.getPoolName() + ", run the transaction inside onShard");
+        }
+    }
+
+    private ShardRule shardRuleOf(String sql) {
+        DBConnectionManager connMgr = DBConnectionManager.getInstance();
+        for (String table : SqlTables.tablesOf(sql)) {
+            ShardRule rule = connMgr.getShardRule(table);
+            if (rule != null) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the shard pool of the object, or null if it is not sharded or a shard is already chosen
+     * @throws SQLException if the object is sharded but has no valid shard key, it must not go to the write pool
+     */
+    private String shardOf(Object object) throws SQLException {
+        if (shard.get() != null) {
+            return null;
+        }
+        ShardRule rule;
+        try {
+            rule = getShardRule(object.getClass());
+        } catch (AnnotaionParseException e) {
+            LOGGER.error(e.getMessage());
+            return null;
+        }
+        if (rule == null) {
+            return null;
+        }
+        try {
+            ColumnMetadata key = EntityMetadata.forClass(object.getClass()).getColumn(rule.getKeyColumn());
+            if (key == null) {
+                throw new SQLException("no shard key column " + rule.getKeyColumn() + " in " + object.getClass().getName());
+            }
+            return rule.getPool(key.get(object));
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("could not find the shard of " + object.getClass().getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the indexes of the objects by shard pool, or null if the objects are not sharded
+     * @throws SQLException if a sharded object has no valid shard key
+     */
+    private Map<String, List<Integer>> partition(List<?> objects) throws SQLException {
+        if (shard.get() != null || objects.isEmpty()) {
+            return null;
+        }
+        Map<String, List<Integer>> shards = new LinkedHashMap<String, List<Integer>>();
+        boolean sharded = false;
+        for (int i = 0; i < objects.size(); i++) {
+            String poolName = shardOf(objects.get(i));
+            if (poolName != null) {
+                sharded = true;
+            } else {
+                poolName = getWritePool();
+            }
+            List<Integer> rows = shards.get(poolName);
+            if (rows == null) {
+                rows = new ArrayList<Integer>();
+                shards.put(poolName, rows);
+            }
+            rows.add(i);
+        }
+        return sharded ? shards : null;
+    }
+
+    private static List<Object> subList(List<?> objects, List<Integer> indexes) {
+        List<Object> part = new ArrayList<Object>(indexes.size());
+        for (Integer index : indexes) {
+            part.add(objects.get(index));
+        }
+        return part;
+    }
+
+    private static <T> List<T> concat(List<List<T>> results) {
+        int size = 0;
+        for (List<T> result : results) {
+            size += result.size();
+        }
+        List<T> list = new ArrayList<T>(size);
+        for (List<T> result : results) {
+            list.addAll(result);
+        }
+        return list;
+    }
+
+    /**
+     * Merge lists which are each sorted by the order.
+     */
+    private static <T> List<T> merge(final List<List<T>> results, final Comparator<? super T> order) {
+        PriorityQueue<int[]> heads = new PriorityQueue<int[]>(Math.max(results.size(), 1), new Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {
+                int c = order.compare(results.get(a[0]).get(a[1]), results.get(b[0]).get(b[1]));
+                // 相等时保持分片顺序
+                return c != 0 ? c : a[0] - b[0];
+            }
+        });
+        int size = 0;
+        for (int i = 0; i < results.size(); i++) {
+            size += results.get(i).size();
+            if (!results.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<T> list = new ArrayList<T>(size);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> result = results.get(head[0]);
+            list.add(result.get(head[1]));
+            if (++head[1] < result.size()) {
+                heads.add(head);
+            }
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> castList(List<?> list) {
+        return (List<T>) list;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identical concurrent reads of daos with BaseDao.setSingleFlight(true) share one execution.
+ * A call with the same pool, SQL, parameter values and result type as a query another thread is
+ * executing waits for that query instead of checking out a connection and running it again.
+ * The first caller gets the result it read, every waiting caller gets its own copy, so callers may
+ * change the lists and objects they get. A failure of the query is thrown to all of them.
+ * The statistics are published through JMX as type SingleFlight.
+ */
+public final class SingleFlight {
+
+    private static final ConcurrentHashMap<Key, Call> CALLS = new ConcurrentHashMap<Key, Call>();
+
+    private static final SingleFlightStats STATS = new SingleFlightStats();
+
+    static {
+        Metrics.registerMBean("SingleFlight", "default", STATS);
+    }
+
+    private SingleFlight() {
+    }
+
+    public static SingleFlightStats getStats() {
+        return STATS;
+    }
+
+    static int inFlight() {
+        return CALLS.size();
+    }
+
+    /**
+     * Copies a shared result for one waiting caller.
+     */
+    interface Copier<T> {
+        T copy(T result) throws Exception;
+    }
+
+    /**
+     * Execute the query, or wait for the same query already executed by another thread.
+     *
+     * @param type the type of the result rows, part of the key as the same SQL may be mapped differently
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T execute(String pool, Class<?> type, String sql, Object[] params,
+                         Callable<T> query, Copier<T> copier) throws Exception {
+        Key key = new Key(pool, type, sql, params);
+        while (true) {
+            Call call = new Call();
+            Call running = CALLS.putIfAbsent(key, call);
+            if (running == null) {
+                STATS.executed();
+                return lead(key, call, query, copier);
+            }
+            if (running.join()) {
+                STATS.saved();
+                return copier.copy((T) running.await());
+            }
+            // 执行中的查询刚刚结束, 重新查找或执行
+            CALLS.remove(key, running);
+        }
+    }
+
+    private static <T> T lead(Key key, Call call, Callable<T> query, Copier<T> copier) throws Exception {
+        try {
+            T result = query.call();
+            CALLS.remove(key, call);
+            if (call.close()) {
+                // 等待者拿到独立的一份, 调用者之后修改结果不影响它们
+                Object shared = null;
+                Exception failure = null;
+                try {
+                    shared = copier.copy(result);
+                } catch (Exception e) {
+                    failure = e;
+                }
+                call.complete(shared, failure);
+            }
+            return result;
+        } catch (Exception e) {
+            CALLS.remove(key, call);
+            call.close();
+            call.complete(null, e);
+            throw e;
+        } finally {
+            CALLS.remove(key, call);
+            call.close();
+            call.complete(null, new IllegalStateException("query did not complete: " + key.sql));
+        }
+    }
+
+    /**
+     * One execution of a query and the callers waiting for it.
+     */
+    private static final class Call {
+        private boolean closed;
+        private int waiters;
+        private boolean done;
+        private Object result;
+        private Exception failure;
+
+        /**
+         * @return false if the leader no longer takes waiters
+         */
+        synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /**
+         * @return whether anyone joined
+         */
+        synchronized boolean close() {
+            closed = true;
+            return waiters > 0;
+        }
+
+        synchronized void complete(Object result, Exception failure) {
+            if (done) {
+                return;
+            }
+            this.result = result;
+            this.failure = failure;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized Object await() throws Exception {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // 执行查询的调用者一定会完成
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+    }
+
+    private static final class Key {
+        final String pool;
+        final Class<?> type;
+        final String sql;
+        final Object[] params;
+        final int hash;
+
+        Key(String pool, Class<?> type, String sql, Object[] params) {
+            this.pool = pool;
+            this.type = type;
+            this.sql = sql;
+            this.params = params;
+            this.hash = ((pool.hashCode() * 31 + type.hashCode()) * 31 + sql.hashCode()) * 31
+                    + Arrays.deepHashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && pool.equals(other.pool) && type == other.type
+                    && sql.equals(other.sql) && Arrays.deepEquals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
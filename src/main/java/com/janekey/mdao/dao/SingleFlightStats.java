@@ -0,0 +1,46 @@
+package com.janekey.mdao.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of {@link SingleFlight}: the queries that were executed and the calls that got the
+ * result of a query another thread was already executing instead of executing it again.
+ */
+public final class SingleFlightStats implements SingleFlightStatsMBean {
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+
+    SingleFlightStats() {
+    }
+
+    void executed() {
+        executions.incrementAndGet();
+    }
+
+    void saved() {
+        saved.incrementAndGet();
+    }
+
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    public long getSavedExecutions() {
+        return saved.get();
+    }
+
+    /**
+     * @return saved / (executions + saved), or 0 before the first call
+     */
+    public double getSavedRate() {
+        long s = saved.get();
+        long total = s + executions.get();
+        return total == 0 ? 0 : (double) s / total;
+    }
+
+    public int getInFlight() {
+        return SingleFlight.inFlight();
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.janekey.mdao.dao;
+
+/**
+ * JMX view of {@link SingleFlightStats}.
+ */
+public interface SingleFlightStatsMBean {
+
+    long getExecutions();
+
+    long getSavedExecutions();
+
+    double getSavedRate();
+
+    int getInFlight();
+
+}
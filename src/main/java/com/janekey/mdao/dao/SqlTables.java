@@ -0,0 +1,92 @@
+package com.janekey.mdao.dao;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Find the tables a statement reads or writes: the names after FROM, JOIN, INTO, UPDATE and TABLE,
+ * including comma separated FROM lists. Names are lower case without quotes and schema.
+ * It is a scan of the tokens, not a parser; a table in a subquery is found by its own FROM.
+ */
+final class SqlTables {
+
+    private static final String NAME = "(?:`[^`]*`|\"[^\"]*\"|[\\w$]+)";
+
+    private static final Pattern TOKEN = Pattern.compile(NAME + "(?:\\." + NAME + ")*|'(?:[^']|'')*'|\\S");
+
+    private static final Set<String> TABLE_KEYWORDS = new HashSet<String>(Arrays.asList(
+            "from", "join", "straight_join", "into", "update", "table"));
+
+    // 表名后不是别名的关键字
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+            "where", "join", "inner", "left", "right", "full", "outer", "cross", "natural", "straight_join",
+            "on", "using", "group", "order", "having", "limit", "union", "set", "values", "value", "select",
+            "for", "lock", "window", "partition", "force", "use", "ignore", "as"));
+
+    private static final int MAX_SQL = 1000;
+
+    private static final ConcurrentHashMap<String, String[]> SQL_TABLES = new ConcurrentHashMap<String, String[]>();
+
+    private SqlTables() {
+    }
+
+    /**
+     * {@link #tables(String)}, remembered for the first 1000 SQL texts.
+     */
+    static String[] tablesOf(String sql) {
+        String[] tables = SQL_TABLES.get(sql);
+        if (tables == null) {
+            Set<String> found = tables(sql);
+            tables = found.toArray(new String[found.size()]);
+            if (SQL_TABLES.size() < MAX_SQL) {
+                SQL_TABLES.put(sql, tables);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * @return the tables of the statement, empty if none is found
+     */
+    static Set<String> tables(String sql) {
+        Set<String> tables = new LinkedHashSet<String>();
+        Matcher m = TOKEN.matcher(sql);
+        String previous = null;
+        boolean inList = false;
+        while (m.find()) {
+            String token = m.group();
+            String lower = token.toLowerCase();
+            if (previous != null && TABLE_KEYWORDS.contains(previous) && isName(token)) {
+                tables.add(name(token));
+                // FROM a, b 的逗号列表
+                inList = "from".equals(previous);
+            } else if (inList && ",".equals(token)) {
+                lower = "from";
+            } else if (inList && !isAlias(lower)) {
+                inList = false;
+            }
+            previous = lower;
+        }
+        return tables;
+    }
+
+    private static boolean isName(String token) {
+        char c = token.charAt(0);
+        return c == '`' || c == '"' || Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isAlias(String lower) {
+        return "as".equals(lower) || (isName(lower) && !KEYWORDS.contains(lower));
+    }
+
+    private static String name(String token) {
+        String name = token.replace("`", "").replace("\"", "");
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.janekey.mdao.dao;
+
+/**
+ * The work of {@link BaseDao#inTransaction(boolean, TransactionWork)}.
+ */
+public interface TransactionWork<T> {
+
+    T run() throws Exception;
+
+}
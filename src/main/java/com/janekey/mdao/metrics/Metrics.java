@@ -0,0 +1,156 @@
+package com.janekey.mdao.metrics;
+
+import org.apache.log4j.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Switch and registry of the mdao metrics. Metrics are off unless 'metrics = true' is set in
+ * database.properties or {@link #setEnabled(boolean)} is called; when off the instrumented code
+ * only reads {@link #isEnabled()}.
+ * Statistics are published as MBeans in the '{@value #DOMAIN}' JMX domain and every event is
+ * passed to the registered {@link MetricsListener}s.
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class);
+
+    public static final String DOMAIN = "com.janekey.mdao";
+
+    /**
+     * At most this many SQL texts are tracked, later ones are counted as {@link #OTHER_SQL}.
+     */
+    public static final int MAX_SQL = 1000;
+    public static final String OTHER_SQL = "<other>";
+
+    private static volatile boolean enabled = false;
+
+    private static final CopyOnWriteArrayList<MetricsListener> listeners = new CopyOnWriteArrayList<MetricsListener>();
+    private static final ConcurrentHashMap<String, SqlStats> sqlStats = new ConcurrentHashMap<String, SqlStats>();
+    private static final AtomicInteger sqlIds = new AtomicInteger();
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return the statistics of the SQL text, or null if it was not executed while metrics were enabled
+     */
+    public static SqlStats getSqlStats(String sql) {
+        return sqlStats.get(sql);
+    }
+
+    public static Collection<SqlStats> getAllSqlStats() {
+        return Collections.unmodifiableCollection(sqlStats.values());
+    }
+
+    /**
+     * Register an MBean as '{@value #DOMAIN}:type=&lt;type&gt;,name=&lt;name&gt;', replacing a previous one.
+     */
+    public static void registerMBean(String type, String name, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(mbean, objectName);
+        } catch (Exception e) {
+            LOGGER.error("register MBean " + type + " " + name + " failed: " + e.getMessage());
+        }
+    }
+
+    public static void connectionCheckedOut(String poolName, long waitNanos) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.connectionCheckedOut(poolName, waitNanos);
+            } catch (RuntimeException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void checkoutTimeout(String poolName, long waitNanos) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.checkoutTimeout(poolName, waitNanos);
+            } catch (RuntimeException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void connectionCreated(String poolName, long createNanos) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.connectionCreated(poolName, createNanos);
+            } catch (RuntimeException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void poolResized(String poolName, int oldSize, int newSize, String reason) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.poolResized(poolName, oldSize, newSize, reason);
+            } catch (RuntimeException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public static void statementExecuted(String poolName, String sql, long nanos, int rows, boolean error) {
+        sqlStats(sql).record(nanos, rows, error);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.statementExecuted(poolName, sql, nanos, rows, error);
+            } catch (RuntimeException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static SqlStats sqlStats(String sql) {
+        SqlStats stats = sqlStats.get(sql);
+        if (stats == null) {
+            if (sqlStats.size() >= MAX_SQL) {
+                sql = OTHER_SQL;
+                stats = sqlStats.get(sql);
+                if (stats != null) {
+                    return stats;
+                }
+            }
+            stats = new SqlStats(sql);
+            SqlStats exist = sqlStats.putIfAbsent(sql, stats);
+            if (exist != null) {
+                return exist;
+            }
+            registerMBean("Sql", String.valueOf(sqlIds.incrementAndGet()), stats);
+        }
+        return stats;
+    }
+
+}
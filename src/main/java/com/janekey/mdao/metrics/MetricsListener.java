@@ -0,0 +1,39 @@
+package com.janekey.mdao.metrics;
+
+/**
+ * Receive every pool and statement event while metrics are enabled, e.g. to bridge them to
+ * another metrics system. Called on the thread doing the work, so implementations must be fast
+ * and thread safe. Register with {@link Metrics#addListener(MetricsListener)}.
+ */
+public interface MetricsListener {
+
+    /**
+     * A connection was checked out of the pool after waiting waitNanos.
+     */
+    void connectionCheckedOut(String poolName, long waitNanos);
+
+    /**
+     * No connection could be checked out within the timeout.
+     */
+    void checkoutTimeout(String poolName, long waitNanos);
+
+    /**
+     * The pool opened a new physical connection in createNanos.
+     */
+    void connectionCreated(String poolName, long createNanos);
+
+    /**
+     * The adaptive sizing of the pool changed its target size, see '&lt;pool&gt;.adaptive'.
+     */
+    default void poolResized(String poolName, int oldSize, int newSize, String reason) {
+    }
+
+    /**
+     * A statement was executed.
+     *
+     * @param rows  rows read or updated, -1 if unknown
+     * @param error true if the execution threw an SQLException
+     */
+    void statementExecuted(String poolName, String sql, long nanos, int rows, boolean error);
+
+}
@@ -0,0 +1,69 @@
+package com.janekey.mdao.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, row and error counts of one SQL text.
+ */
+public final class SqlStats implements SqlStatsMBean {
+
+    private final String sql;
+    private final Histogram latency = new Histogram();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    SqlStats(String sql) {
+        this.sql = sql;
+    }
+
+    void record(long nanos, int rows, boolean error) {
+        latency.record(nanos);
+        if (rows > 0) {
+            this.rows.addAndGet(rows);
+        }
+        if (error) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getExecutions() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public double getMeanMicros() {
+        return latency.getMean() / 1000;
+    }
+
+    public long getP50Micros() {
+        return latency.getPercentile(50) / 1000;
+    }
+
+    public long getP95Micros() {
+        return latency.getPercentile(95) / 1000;
+    }
+
+    public long getP99Micros() {
+        return latency.getPercentile(99) / 1000;
+    }
+
+    public long getMaxMicros() {
+        return latency.getMax() / 1000;
+    }
+
+}
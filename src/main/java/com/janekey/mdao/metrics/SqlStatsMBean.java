@@ -0,0 +1,26 @@
+package com.janekey.mdao.metrics;
+
+/**
+ * JMX view of the executions of one SQL text, times in microseconds.
+ */
+public interface SqlStatsMBean {
+
+    String getSql();
+
+    long getExecutions();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP95Micros();
+
+    long getP99Micros();
+
+    long getMaxMicros();
+
+}
@@ -0,0 +1,92 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * One column of a {@link ColumnarResult}. Values are kept in a growable array of the column type,
+ * nulls in a bitmap. Typed getters of a different type convert the value, e.g. getDouble of an int column.
+ */
+public abstract class Column {
+
+    private final String name;
+    private long[] nulls = new long[1];
+    protected int size;
+
+    protected Column(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        checkRow(row);
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public int getInt(int row) {
+        return (int) getLong(row);
+    }
+
+    public abstract long getLong(int row);
+
+    public abstract double getDouble(int row);
+
+    /**
+     * @return the value as a string, or null
+     */
+    public abstract String getString(int row);
+
+    /**
+     * @return the value boxed, or null
+     */
+    public abstract Object getObject(int row);
+
+    /**
+     * Append the value of the current row of the result set.
+     */
+    abstract void read(ResultSet rs, int index) throws SQLException;
+
+    /**
+     * @return the capacity of the value array
+     */
+    abstract int capacity();
+
+    /**
+     * Grow the value array to at least minCapacity.
+     */
+    abstract void grow(int minCapacity);
+
+    /**
+     * Make room for one more row, called before the value of the row is stored.
+     */
+    protected void ensureRoom() {
+        if (size == capacity()) {
+            grow(Math.max(16, size + (size >> 1)));
+        }
+        if ((size >>> 6) == nulls.length) {
+            nulls = Arrays.copyOf(nulls, nulls.length * 2);
+        }
+    }
+
+    protected void setNull(int row) {
+        nulls[row >>> 6] |= 1L << row;
+    }
+
+    protected void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Query result stored by column instead of by row. Numeric columns are kept in primitive arrays
+ * and strings are dictionary encoded, so a result of millions of numeric rows holds no boxed values.
+ * DECIMAL columns with a scale are read as double.
+ */
+public final class ColumnarResult {
+
+    /**
+     * A result without columns and rows.
+     */
+    public static final ColumnarResult EMPTY = new ColumnarResult(new Column[0]);
+
+    private final Column[] columns;
+    private final Map<String, Column> columnMap = new HashMap<String, Column>();
+    private int rowCount;
+
+    private ColumnarResult(Column[] columns) {
+        this.columns = columns;
+        for (Column column : columns) {
+            columnMap.put(column.getName(), column);
+        }
+    }
+
+    /**
+     * Read all rows of the result set with the typed getter of each column.
+     */
+    public static ColumnarResult read(ResultSet rs) throws SQLException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        Column[] columns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = createColumn(rsmd, i + 1);
+        }
+        ColumnarResult result = new ColumnarResult(columns);
+        int rows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                columns[i].read(rs, i + 1);
+            }
+            rows++;
+        }
+        result.rowCount = rows;
+        return result;
+    }
+
+    private static Column createColumn(ResultSetMetaData rsmd, int index) throws SQLException {
+        String name = rsmd.getColumnLabel(index);
+        switch (rsmd.getColumnType(index)) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                return new IntColumn(name);
+            case Types.INTEGER:
+                return rsmd.isSigned(index) ? new IntColumn(name) : new LongColumn(name);
+            case Types.BIGINT:
+                return rsmd.isSigned(index) ? new LongColumn(name) : new ObjectColumn(name);
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                if (rsmd.getScale(index) == 0 && rsmd.getPrecision(index) > 0 && rsmd.getPrecision(index) <= 18) {
+                    return new LongColumn(name);
+                }
+                return new DoubleColumn(name);
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new DoubleColumn(name);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return new StringColumn(name);
+            default:
+                return new ObjectColumn(name);
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * @param index column index, starting at 0
+     */
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * @return the column of the label, or null
+     */
+    public Column getColumn(String label) {
+        return columnMap.get(label);
+    }
+
+    /**
+     * @return the column of the label as the column type, e.g. getColumn("total", LongColumn.class)
+     * @throws IllegalArgumentException if there is no such column or it has another type
+     */
+    public <C extends Column> C getColumn(String label, Class<C> type) {
+        Column column = columnMap.get(label);
+        if (column == null || !type.isInstance(column)) {
+            throw new IllegalArgumentException("No " + type.getSimpleName() + " column : " + label);
+        }
+        return type.cast(column);
+    }
+
+    public boolean isNull(int column, int row) {
+        return columns[column].isNull(row);
+    }
+
+    public int getInt(int column, int row) {
+        return columns[column].getInt(row);
+    }
+
+    public long getLong(int column, int row) {
+        return columns[column].getLong(row);
+    }
+
+    public double getDouble(int column, int row) {
+        return columns[column].getDouble(row);
+    }
+
+    public String getString(int column, int row) {
+        return columns[column].getString(row);
+    }
+
+    public Object getObject(int column, int row) {
+        return columns[column].getObject(row);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Column of FLOAT, DOUBLE and fractional DECIMAL values, kept in a double[].
+ */
+public final class DoubleColumn extends Column {
+
+    private double[] values = new double[0];
+
+    DoubleColumn(String name) {
+        super(name);
+    }
+
+    public long getLong(int row) {
+        return (long) getDouble(row);
+    }
+
+    public double getDouble(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    public String getString(int row) {
+        return isNull(row) ? null : String.valueOf(values[row]);
+    }
+
+    public Object getObject(int row) {
+        return isNull(row) ? null : Double.valueOf(values[row]);
+    }
+
+    /**
+     * @return the values, null rows are 0. The array may be longer than {@link #size()}.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    void read(ResultSet rs, int index) throws SQLException {
+        ensureRoom();
+        values[size] = rs.getDouble(index);
+        if (rs.wasNull()) {
+            setNull(size);
+        }
+        size++;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    void grow(int minCapacity) {
+        values = Arrays.copyOf(values, minCapacity);
+    }
+
+}
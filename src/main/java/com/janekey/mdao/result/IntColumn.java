@@ -0,0 +1,63 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Column of TINYINT, SMALLINT, signed INTEGER and BIT values, kept in an int[].
+ */
+public final class IntColumn extends Column {
+
+    private int[] values = new int[0];
+
+    IntColumn(String name) {
+        super(name);
+    }
+
+    public int getInt(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    public long getLong(int row) {
+        return getInt(row);
+    }
+
+    public double getDouble(int row) {
+        return getInt(row);
+    }
+
+    public String getString(int row) {
+        return isNull(row) ? null : String.valueOf(values[row]);
+    }
+
+    public Object getObject(int row) {
+        return isNull(row) ? null : Integer.valueOf(values[row]);
+    }
+
+    /**
+     * @return the values, null rows are 0. The array may be longer than {@link #size()}.
+     */
+    public int[] values() {
+        return values;
+    }
+
+    void read(ResultSet rs, int index) throws SQLException {
+        ensureRoom();
+        values[size] = rs.getInt(index);
+        if (rs.wasNull()) {
+            setNull(size);
+        }
+        size++;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    void grow(int minCapacity) {
+        values = Arrays.copyOf(values, minCapacity);
+    }
+
+}
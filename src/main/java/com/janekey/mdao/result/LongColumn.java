@@ -0,0 +1,59 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Column of BIGINT, unsigned INTEGER and integral DECIMAL values, kept in a long[].
+ */
+public final class LongColumn extends Column {
+
+    private long[] values = new long[0];
+
+    LongColumn(String name) {
+        super(name);
+    }
+
+    public long getLong(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    public double getDouble(int row) {
+        return getLong(row);
+    }
+
+    public String getString(int row) {
+        return isNull(row) ? null : String.valueOf(values[row]);
+    }
+
+    public Object getObject(int row) {
+        return isNull(row) ? null : Long.valueOf(values[row]);
+    }
+
+    /**
+     * @return the values, null rows are 0. The array may be longer than {@link #size()}.
+     */
+    public long[] values() {
+        return values;
+    }
+
+    void read(ResultSet rs, int index) throws SQLException {
+        ensureRoom();
+        values[size] = rs.getLong(index);
+        if (rs.wasNull()) {
+            setNull(size);
+        }
+        size++;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    void grow(int minCapacity) {
+        values = Arrays.copyOf(values, minCapacity);
+    }
+
+}
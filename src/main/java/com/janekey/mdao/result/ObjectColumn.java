@@ -0,0 +1,55 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Column of the values without a primitive column, e.g. dates and BigDecimal, kept as the driver's objects.
+ */
+public final class ObjectColumn extends Column {
+
+    private Object[] values = new Object[0];
+
+    ObjectColumn(String name) {
+        super(name);
+    }
+
+    public long getLong(int row) {
+        Object value = getObject(row);
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    public double getDouble(int row) {
+        Object value = getObject(row);
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(String.valueOf(value));
+    }
+
+    public String getString(int row) {
+        Object value = getObject(row);
+        return value == null ? null : value.toString();
+    }
+
+    public Object getObject(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    void read(ResultSet rs, int index) throws SQLException {
+        ensureRoom();
+        Object value = rs.getObject(index);
+        if (value == null) {
+            setNull(size);
+        }
+        values[size++] = value;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    void grow(int minCapacity) {
+        values = Arrays.copyOf(values, minCapacity);
+    }
+
+}
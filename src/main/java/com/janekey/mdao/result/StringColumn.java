@@ -0,0 +1,85 @@
+package com.janekey.mdao.result;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoded column of CHAR and VARCHAR values. Every distinct string is stored once,
+ * rows keep the int code of their string in the dictionary.
+ */
+public final class StringColumn extends Column {
+
+    private int[] codes = new int[0];
+    private final List<String> dictionary = new ArrayList<String>();
+    private final Map<String, Integer> index = new HashMap<String, Integer>();
+
+    StringColumn(String name) {
+        super(name);
+    }
+
+    public long getLong(int row) {
+        return Long.parseLong(getString(row));
+    }
+
+    public double getDouble(int row) {
+        return Double.parseDouble(getString(row));
+    }
+
+    public String getString(int row) {
+        return isNull(row) ? null : dictionary.get(codes[row]);
+    }
+
+    public Object getObject(int row) {
+        return getString(row);
+    }
+
+    /**
+     * @return the dictionary code of the row, -1 for null
+     */
+    public int getCode(int row) {
+        return isNull(row) ? -1 : codes[row];
+    }
+
+    /**
+     * @return the distinct strings of the column, indexed by code
+     */
+    public List<String> getDictionary() {
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    void read(ResultSet rs, int index) throws SQLException {
+        ensureRoom();
+        String value = rs.getString(index);
+        if (value == null) {
+            setNull(size);
+        } else {
+            codes[size] = encode(value);
+        }
+        size++;
+    }
+
+    private int encode(String value) {
+        Integer code = index.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            index.put(value, code);
+        }
+        return code;
+    }
+
+    int capacity() {
+        return codes.length;
+    }
+
+    void grow(int minCapacity) {
+        codes = Arrays.copyOf(codes, minCapacity);
+    }
+
+}
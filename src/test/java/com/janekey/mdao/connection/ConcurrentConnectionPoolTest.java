@@ -0,0 +1,130 @@
+package com.janekey.mdao.connection;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrentConnectionPoolTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private ConcurrentConnectionPool pool;
+
+    @After
+    public void release() {
+        executor.shutdownNow();
+        if (pool != null) {
+            pool.release();
+        }
+    }
+
+    private ConcurrentConnectionPool pool(String... settings) {
+        Properties props = new Properties();
+        props.setProperty("p.url", "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        props.setProperty("p.user", "sa");
+        props.setProperty("p.maxconn", "1");
+        props.setProperty("p.pooltype", "concurrent");
+        for (int i = 0; i < settings.length; i += 2) {
+            props.setProperty("p." + settings[i], settings[i + 1]);
+        }
+        pool = new ConcurrentConnectionPool(PoolConfig.load("p", props));
+        return pool;
+    }
+
+    private Future<PooledConnection> checkoutLater(final long timeout) {
+        return executor.submit(new Callable<PooledConnection>() {
+            public PooledConnection call() throws Exception {
+                return pool.checkout(timeout);
+            }
+        });
+    }
+
+    /**
+     * Wait until a thread waits in the idle queue.
+     */
+    private void awaitWaiter() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getWaitingCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void returnedConnectionIsHandedToTheWaitingThread() throws Exception {
+        pool();
+        PooledConnection held = pool.checkout(1000);
+        Future<PooledConnection> waiting = checkoutLater(5000);
+        awaitWaiter();
+        pool.checkin(held);
+        assertSame(held, waiting.get(1, TimeUnit.SECONDS));
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void threadsOverMaxWaitersFailAtOnce() throws Exception {
+        pool("maxwaiters", "1");
+        PooledConnection held = pool.checkout(1000);
+        Future<PooledConnection> waiting = checkoutLater(5000);
+        awaitWaiter();
+        long start = System.nanoTime();
+        try {
+            pool.checkout(5000);
+            fail();
+        } catch (PoolExhaustedException e) {
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        }
+        pool.checkin(held);
+        assertSame(held, waiting.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void checkoutTimesOut() throws Exception {
+        pool();
+        pool.checkout(1000);
+        long start = System.nanoTime();
+        try {
+            pool.checkout(200);
+            fail();
+        } catch (PoolExhaustedException e) {
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        }
+    }
+
+    @Test
+    public void discardedConnectionIsReplacedForTheWaitingThread() throws Exception {
+        pool("maxlifetime", "200");
+        PooledConnection held = pool.checkout(1000);
+        Future<PooledConnection> waiting = checkoutLater(5000);
+        awaitWaiter();
+        Thread.sleep(250);
+        // 过期的连接在归还时关闭
+        pool.checkin(held);
+        PooledConnection replacement = waiting.get(1, TimeUnit.SECONDS);
+        assertNotSame(held, replacement);
+        assertTrue(held.getConnection().isClosed());
+    }
+
+    @Test
+    public void permitsOfAHigherLimitReachWaitingThreads() throws Exception {
+        pool("maxconn", "2");
+        pool.limitChanged(2, 1);
+        pool.checkout(1000);
+        Future<PooledConnection> waiting = checkoutLater(5000);
+        awaitWaiter();
+        pool.limitChanged(1, 2);
+        waiting.get(1, TimeUnit.SECONDS);
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.janekey.mdao.dao;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AsyncBaseDaoTest extends AsyncBaseDao {
+
+    protected String getWritePool() {
+        return "h2";
+    }
+
+    /**
+     * h2s as the read pool, like a replica of h2
+     */
+    protected String getReadPool() {
+        return "h2s";
+    }
+
+    @Test
+    public void readsWaitForTheReadPoolOnly() throws Exception {
+        // h2.maxconn 个写操作占用写连接池的所有执行位置
+        final CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Integer>> writes = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            writes.add(submit(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 0;
+            }));
+        }
+        try {
+            assertEquals(1, selectCountAsync("SELECT 1").get(1, TimeUnit.SECONDS).intValue());
+        } finally {
+            release.countDown();
+        }
+        for (CompletableFuture<Integer> write : writes) {
+            write.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void asyncOperationsAreRefusedInsideATransaction() throws SQLException {
+        try {
+            inTransaction(new TransactionWork<Void>() {
+                public Void run() throws Exception {
+                    executeUpdateAsync("UPDATE tb_missing SET id = 1");
+                    return null;
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // 预期
+        }
+    }
+
+}
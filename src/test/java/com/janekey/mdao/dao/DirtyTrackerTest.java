@@ -0,0 +1,72 @@
+package com.janekey.mdao.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DirtyTrackerTest extends H2Dao {
+
+    @Before
+    public void createTable() {
+        executeUpdate("CREATE TABLE IF NOT EXISTS tb_tracked_item (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(32))");
+        executeUpdate("DELETE FROM tb_tracked_item");
+    }
+
+    @Test
+    public void updateAfterRollbackWritesAgain() throws SQLException {
+        rollbackAndUpdateAgain(false);
+    }
+
+    @Test
+    public void updateAfterRolledBackBatchWritesAgain() throws SQLException {
+        rollbackAndUpdateAgain(true);
+    }
+
+    private void rollbackAndUpdateAgain(boolean batchWrites) throws SQLException {
+        TrackedItem item = new TrackedItem();
+        item.setName("before");
+        final int id = executeInsert(item);
+        final TrackedItem loaded = findById(TrackedItem.class, id);
+        loaded.setName("after");
+        try {
+            inTransaction(batchWrites, new TransactionWork<Void>() {
+                public Void run() throws Exception {
+                    updateObject(loaded);
+                    throw new IllegalStateException("roll back");
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            // 预期的回滚
+        }
+        assertEquals("before", findById(TrackedItem.class, id).getName());
+
+        assertEquals(1, updateObject(loaded));
+        assertEquals("after", findById(TrackedItem.class, id).getName());
+    }
+
+    @Test
+    public void committedUpdateIsTracked() throws SQLException {
+        TrackedItem item = new TrackedItem();
+        item.setName("before");
+        int id = executeInsert(item);
+        final TrackedItem loaded = findById(TrackedItem.class, id);
+        loaded.setName("after");
+        inTransaction(true, new TransactionWork<Void>() {
+            public Void run() throws Exception {
+                updateObject(loaded);
+                return null;
+            }
+        });
+        assertEquals("after", findById(TrackedItem.class, id).getName());
+        // 提交后快照为新值, 没有修改时不执行更新
+        executeUpdate("UPDATE tb_tracked_item SET name = 'other' WHERE id = ?", id);
+        assertEquals(1, updateObject(loaded));
+        assertEquals("other", findById(TrackedItem.class, id).getName());
+    }
+
+}
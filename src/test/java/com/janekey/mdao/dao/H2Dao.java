@@ -0,0 +1,12 @@
+package com.janekey.mdao.dao;
+
+/**
+ * Dao of the in-memory h2 pool of the tests.
+ */
+public class H2Dao extends BaseDao {
+
+    protected String getWritePool() {
+        return "h2";
+    }
+
+}
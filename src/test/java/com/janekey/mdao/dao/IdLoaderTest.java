@@ -0,0 +1,82 @@
+package com.janekey.mdao.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class IdLoaderTest extends H2Dao {
+
+    @Before
+    public void createTable() {
+        executeUpdate("CREATE TABLE IF NOT EXISTS tb_tracked_item (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(32))");
+        executeUpdate("DELETE FROM tb_tracked_item");
+    }
+
+    @Test
+    public void idsOfOtherTypesAreConverted() {
+        TrackedItem item = new TrackedItem();
+        item.setName("a");
+        int id = executeInsert(item);
+
+        Map<Object, TrackedItem> rows = findByIdsAsMap(TrackedItem.class,
+                Arrays.<Object>asList(String.valueOf(id), (long) id, id));
+        // 同一行的id只出现一次, 以第一次出现的id为键
+        assertEquals(1, rows.size());
+        assertEquals("a", rows.get(String.valueOf(id)).getName());
+    }
+
+    @Test
+    public void idsThatCanNotBeConvertedAreRejected() {
+        try {
+            findByIds(TrackedItem.class, Arrays.<Object>asList(1, "a"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void parallelChunksInsideAsyncOperationsDoNotWaitForTheirOwnSlots() throws Exception {
+        final List<Object> ids = new ArrayList<Object>();
+        for (int i = 0; i < 8; i++) {
+            TrackedItem item = new TrackedItem();
+            item.setName("item" + i);
+            ids.add(executeInsert(item));
+        }
+        final AsyncBaseDao dao = new AsyncBaseDao() {
+            protected String getWritePool() {
+                return "h2";
+            }
+        };
+        dao.setIdChunks(2, true);
+        // h2.maxconn 个操作同时占用所有执行位置后再查询
+        int maxConn = 10;
+        final CountDownLatch started = new CountDownLatch(maxConn);
+        List<CompletableFuture<List<TrackedItem>>> futures = new ArrayList<CompletableFuture<List<TrackedItem>>>();
+        for (int i = 0; i < maxConn; i++) {
+            futures.add(dao.submit(() -> {
+                started.countDown();
+                try {
+                    started.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return dao.findByIds(TrackedItem.class, ids);
+            }));
+        }
+        for (CompletableFuture<List<TrackedItem>> future : futures) {
+            assertEquals(ids.size(), future.get(10, TimeUnit.SECONDS).size());
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.connection.PoolExhaustedException;
+import com.janekey.mdao.connection.UncheckedPoolExhaustedException;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InsertCoalescerTest {
+
+    /**
+     * Gives every row the id in its name, or fails the batch with batchFailure.
+     */
+    private static class FakeDao extends BaseDao {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger singleInserts = new AtomicInteger();
+        volatile Exception batchFailure;
+
+        int[] insertBatch(List<?> objects) throws Exception {
+            batchSizes.add(objects.size());
+            if (batchFailure != null) {
+                throw batchFailure;
+            }
+            int[] ids = new int[objects.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = idOf(objects.get(i));
+            }
+            return ids;
+        }
+
+        int insertOne(Object object) {
+            singleInserts.incrementAndGet();
+            int id = idOf(object);
+            // 奇数行单独插入时失败
+            return id % 2 == 0 ? id : 0;
+        }
+
+        private static int idOf(Object object) {
+            return Integer.parseInt(((TrackedItem) object).getName());
+        }
+    }
+
+    private static List<Future<Integer>> insertConcurrently(final InsertCoalescer coalescer, int rows)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(rows);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        for (int i = 1; i <= rows; i++) {
+            final TrackedItem item = new TrackedItem();
+            item.setName(String.valueOf(i));
+            futures.add(executor.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    return coalescer.insert("pool", item);
+                }
+            }));
+        }
+        executor.shutdown();
+        return futures;
+    }
+
+    @Test
+    public void waitersGetTheirOwnIdsFromTheLeader() throws Exception {
+        FakeDao dao = new FakeDao();
+        InsertCoalescer coalescer = new InsertCoalescer(dao, 500, 100);
+        List<Future<Integer>> futures = insertConcurrently(coalescer, 8);
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i + 1, (int) futures.get(i).get());
+        }
+        int rows = 0;
+        for (int size : dao.batchSizes) {
+            rows += size;
+        }
+        assertEquals(8, rows);
+        assertTrue("rows were not coalesced: " + dao.batchSizes, dao.batchSizes.size() < 8);
+        assertEquals(0, dao.singleInserts.get());
+    }
+
+    @Test
+    public void fullBatchClosesBeforeTheLinger() throws Exception {
+        FakeDao dao = new FakeDao();
+        InsertCoalescer coalescer = new InsertCoalescer(dao, 60000, 4);
+        long start = System.nanoTime();
+        List<Future<Integer>> futures = insertConcurrently(coalescer, 4);
+        for (Future<Integer> future : futures) {
+            future.get();
+        }
+        assertTrue(System.nanoTime() - start < 30000000000L);
+        assertEquals(Collections.singletonList(4), dao.batchSizes);
+    }
+
+    @Test
+    public void rowFailureRetriesRowByRow() throws Exception {
+        FakeDao dao = new FakeDao();
+        dao.batchFailure = new SQLException("Duplicate entry", "23000");
+        InsertCoalescer coalescer = new InsertCoalescer(dao, 60000, 3);
+        List<Future<Integer>> futures = insertConcurrently(coalescer, 3);
+        assertEquals(0, (int) futures.get(0).get());
+        assertEquals(2, (int) futures.get(1).get());
+        assertEquals(0, (int) futures.get(2).get());
+        assertEquals(3, dao.singleInserts.get());
+    }
+
+    @Test
+    public void poolFailureFailsAllCallersAtOnce() throws Exception {
+        FakeDao dao = new FakeDao();
+        dao.batchFailure = new PoolExhaustedException("pool", "no connection within 0 ms");
+        InsertCoalescer coalescer = new InsertCoalescer(dao, 60000, 3);
+        for (Future<Integer> future : insertConcurrently(coalescer, 3)) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof UncheckedPoolExhaustedException);
+            }
+        }
+        assertEquals(0, dao.singleInserts.get());
+    }
+
+    @Test
+    public void connectionFailureFailsAllCallersAtOnce() throws Exception {
+        FakeDao dao = new FakeDao();
+        dao.batchFailure = new SQLException("Communications link failure", "08S01");
+        InsertCoalescer coalescer = new InsertCoalescer(dao, 60000, 3);
+        for (Future<Integer> future : insertConcurrently(coalescer, 3)) {
+            assertEquals(0, (int) future.get());
+        }
+        assertEquals(0, dao.singleInserts.get());
+    }
+
+}
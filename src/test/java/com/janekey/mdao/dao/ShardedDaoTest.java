@@ -0,0 +1,62 @@
+package com.janekey.mdao.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShardedDaoTest extends ShardedDao {
+
+    /**
+     * h2 outside onShard, the pool of the shard inside
+     */
+    protected String getWritePool() {
+        String poolName = super.getWritePool();
+        return DB.equals(poolName) ? "h2" : poolName;
+    }
+
+    @Before
+    public void createTables() {
+        for (String poolName : new String[]{"h2", "h2s"}) {
+            onShard(poolName, () -> {
+                executeUpdate("CREATE TABLE IF NOT EXISTS tb_sharded_item (id INT PRIMARY KEY, name VARCHAR(32))");
+                return executeUpdate("DELETE FROM tb_sharded_item");
+            });
+        }
+    }
+
+    @Test
+    public void scatterInsideAsyncOperationsDoesNotWaitForTheirOwnSlots() throws Exception {
+        for (int i = 1; i <= 4; i++) {
+            ShardedItem item = new ShardedItem();
+            item.setId(i);
+            item.setName("item" + i);
+            executeInsert(item);
+        }
+        // h2.maxconn 个操作同时占用h2的所有执行位置后再查询所有分片, h2也是其中一个分片
+        int maxConn = 10;
+        final CountDownLatch started = new CountDownLatch(maxConn);
+        List<CompletableFuture<List<ShardedItem>>> futures = new ArrayList<CompletableFuture<List<ShardedItem>>>();
+        for (int i = 0; i < maxConn; i++) {
+            futures.add(submit(() -> {
+                started.countDown();
+                try {
+                    started.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return selectListAll("SELECT * FROM tb_sharded_item", ShardedItem.class, null);
+            }));
+        }
+        for (CompletableFuture<List<ShardedItem>> future : futures) {
+            assertEquals(4, future.get(10, TimeUnit.SECONDS).size());
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+
+@Table(name = "tb_sharded_item")
+public class ShardedItem {
+
+    @Column(column = "id")
+    private Integer id;
+
+    @Column(column = "name")
+    private String name;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.janekey.mdao.dao;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    private static final SingleFlight.Copier<List<String>> COPIER = new SingleFlight.Copier<List<String>>() {
+        public List<String> copy(List<String> result) {
+            return new ArrayList<String>(result);
+        }
+    };
+
+    /**
+     * A query which blocks until released, started by the first caller.
+     */
+    private static class BlockingQuery implements Callable<List<String>> {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger executions = new AtomicInteger();
+        final List<String> result = new ArrayList<String>();
+        volatile Exception failure;
+
+        public List<String> call() throws Exception {
+            executions.incrementAndGet();
+            started.countDown();
+            release.await();
+            if (failure != null) {
+                throw failure;
+            }
+            result.add("row");
+            return result;
+        }
+    }
+
+    private static Callable<List<String>> call(final String sql, final BlockingQuery query) {
+        return new Callable<List<String>>() {
+            public List<String> call() throws Exception {
+                return SingleFlight.execute("pool", String.class, sql, new Object[]{1}, query, COPIER);
+            }
+        };
+    }
+
+    /**
+     * Start a leader and the waiters, and return once all waiters joined the leader's query.
+     */
+    private static List<Future<List<String>>> startCalls(ExecutorService executor, String sql, BlockingQuery query,
+                                                         int waiters) throws InterruptedException {
+        List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+        futures.add(executor.submit(call(sql, query)));
+        query.started.await();
+        long saved = SingleFlight.getStats().getSavedExecutions();
+        for (int i = 0; i < waiters; i++) {
+            futures.add(executor.submit(call(sql, query)));
+        }
+        while (SingleFlight.getStats().getSavedExecutions() < saved + waiters) {
+            Thread.sleep(1);
+        }
+        return futures;
+    }
+
+    @Test
+    public void waitersGetCopiesOfTheLeadersResult() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        BlockingQuery query = new BlockingQuery();
+        List<Future<List<String>>> futures = startCalls(executor, "SELECT handoff", query, 5);
+        query.release.countDown();
+
+        assertSame(query.result, futures.get(0).get());
+        for (Future<List<String>> future : futures.subList(1, futures.size())) {
+            List<String> rows = future.get();
+            assertEquals(query.result, rows);
+            assertNotSame(query.result, rows);
+        }
+        assertEquals(1, query.executions.get());
+        assertEquals(0, SingleFlight.inFlight());
+        executor.shutdown();
+    }
+
+    @Test
+    public void failureIsThrownToAllCallers() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        BlockingQuery query = new BlockingQuery();
+        query.failure = new SQLException("query failed");
+        List<Future<List<String>>> futures = startCalls(executor, "SELECT failure", query, 3);
+        query.release.countDown();
+
+        for (Future<List<String>> future : futures) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertSame(query.failure, e.getCause());
+            }
+        }
+        assertEquals(1, query.executions.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void completedQueryIsNotShared() throws Exception {
+        BlockingQuery first = new BlockingQuery();
+        first.release.countDown();
+        BlockingQuery second = new BlockingQuery();
+        second.release.countDown();
+        assertSame(first.result, call("SELECT again", first).call());
+        assertSame(second.result, call("SELECT again", second).call());
+        assertEquals(1, first.executions.get());
+        assertEquals(1, second.executions.get());
+    }
+
+    @Test
+    public void differentParametersAreNotShared() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        BlockingQuery query = new BlockingQuery();
+        Future<List<String>> leader = executor.submit(call("SELECT params", query));
+        query.started.await();
+        BlockingQuery other = new BlockingQuery();
+        other.release.countDown();
+        List<String> rows = SingleFlight.execute("pool", String.class, "SELECT params", new Object[]{2}, other, COPIER);
+        assertSame(other.result, rows);
+        query.release.countDown();
+        assertSame(query.result, leader.get());
+        assertEquals(1, other.executions.get());
+        assertEquals(1, query.executions.get());
+        executor.shutdown();
+    }
+
+}
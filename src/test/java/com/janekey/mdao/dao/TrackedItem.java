@@ -0,0 +1,33 @@
+package com.janekey.mdao.dao;
+
+import com.janekey.mdao.annotation.Column;
+import com.janekey.mdao.annotation.Table;
+import com.janekey.mdao.annotation.Tracked;
+
+@Tracked
+@Table(name = "tb_tracked_item")
+public class TrackedItem {
+
+    @Column(column = "id")
+    private Integer id;
+
+    @Column(column = "name")
+    private String name;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+}